@@ -9,10 +9,12 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "Events")
+// date range searches, see EventSearch
+@Table(name = "Events", indexes = @Index(name = "idx_events_eventdate", columnList = "eventDate"))
 public class Event {
 
 	@Id
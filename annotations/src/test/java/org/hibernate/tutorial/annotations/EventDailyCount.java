@@ -0,0 +1,38 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.time.LocalDate;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * the number of events of a day, maintained by {@link EventDailyRollup}
+ */
+@Entity
+@Table(name = "event_daily_counts")
+public class EventDailyCount {
+
+	@Id
+	@Column(name = "event_day")
+	private LocalDate day;
+
+	@Column(name = "event_count")
+	private long eventCount;
+
+	public EventDailyCount() {
+		// this form used by Hibernate
+	}
+
+	public LocalDate getDay() {
+		return day;
+	}
+
+	public long getEventCount() {
+		return eventCount;
+	}
+}
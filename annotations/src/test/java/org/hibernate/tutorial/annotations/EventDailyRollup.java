@@ -0,0 +1,173 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.hibernate.Session;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * keeps the number of events per day in {@link EventDailyCount}, so a dashboard reads one row per day
+ * instead of grouping the whole Events table. Registered as integrator when bootstrapping:
+ * <pre>
+ * new StandardServiceRegistryBuilder(
+ *         new BootstrapServiceRegistryBuilder().applyIntegrator(new EventDailyRollup()).build())
+ * </pre>
+ * it listens to every insert, update and delete of an {@link Event} and adjusts the count of its day
+ * with a statement on the connection of the flushing session, so the count commits or rolls back
+ * together with the event.
+ * <p>
+ * Bulk updates and deletes, native SQL and other applications writing to the Events table bypass the
+ * listeners, as does an update of an event whose loaded state is unknown. {@link #rebuild(Session)}
+ * recounts the whole table after such changes.
+ */
+public class EventDailyRollup implements Integrator,
+		PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	// adds a delta to the count of a day, creating the row for the first event of the day
+	private static final String ADJUST =
+			"merge into event_daily_counts c using (values (cast(? as date), cast(? as bigint))) d(event_day, delta)"
+					+ " on c.event_day = d.event_day"
+					+ " when matched then update set event_count = c.event_count + d.delta"
+					+ " when not matched then insert (event_day, event_count) values (d.event_day, d.delta)";
+	// days without events disappear, like from the result of a group by
+	private static final String REMOVE_EMPTY = "delete from event_daily_counts where event_day = ? and event_count = 0";
+
+	@Override
+	public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+		EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_INSERT, this);
+		listeners.appendListeners(EventType.POST_UPDATE, this);
+		listeners.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		if (event.getEntity() instanceof Event inserted) {
+			adjust(event.getSession(), inserted.getDate(), 1);
+		}
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		if (event.getEntity() instanceof Event && event.getOldState() != null) {
+			int date = dateIndex(event.getPersister());
+			LocalDateTime before = (LocalDateTime) event.getOldState()[date];
+			LocalDateTime after = (LocalDateTime) event.getState()[date];
+			if (!Objects.equals(day(before), day(after))) {
+				adjust(event.getSession(), before, -1);
+				adjust(event.getSession(), after, 1);
+			}
+		}
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		if (event.getEntity() instanceof Event) {
+			// the entity may have been changed before it was deleted, the deleted state is what was in the database
+			adjust(event.getSession(), (LocalDateTime) event.getDeletedState()[dateIndex(event.getPersister())], -1);
+		}
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	private static int dateIndex(EntityPersister persister) {
+		String[] names = persister.getPropertyNames();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals("date")) {
+				return i;
+			}
+		}
+		throw new IllegalStateException("Event has no date");
+	}
+
+	private static LocalDate day(LocalDateTime date) {
+		return date == null ? null : date.toLocalDate();
+	}
+
+	private static void adjust(EventSource session, LocalDateTime date, long delta) {
+		// events without a date are not counted
+		LocalDate day = day(date);
+		if (day == null) {
+			return;
+		}
+		session.doWork(connection -> {
+			try (PreparedStatement adjust = connection.prepareStatement(ADJUST)) {
+				adjust.setObject(1, day);
+				adjust.setLong(2, delta);
+				adjust.executeUpdate();
+			}
+			if (delta < 0) {
+				try (PreparedStatement removeEmpty = connection.prepareStatement(REMOVE_EMPTY)) {
+					removeEmpty.setObject(1, day);
+					removeEmpty.executeUpdate();
+				}
+			}
+		});
+	}
+
+	/**
+	 * recounts the events of all days, to be run in a transaction
+	 */
+	public static void rebuild(Session session) {
+		session.createNativeMutationQuery("delete from event_daily_counts").executeUpdate();
+		session.createNativeMutationQuery("insert into event_daily_counts (event_day, event_count)"
+				+ " select cast(eventDate as date), count(*) from Events where eventDate is not null"
+				+ " group by cast(eventDate as date)").executeUpdate();
+	}
+
+	/**
+	 * the number of events per day from the rollup, for the days from the first up to the last, exclusive
+	 */
+	public static Map<LocalDate, Long> countsPerDay(Session session, LocalDate from, LocalDate until) {
+		Map<LocalDate, Long> counts = new LinkedHashMap<>();
+		session.createSelectionQuery("from EventDailyCount c where c.day >= :from and c.day < :until order by c.day",
+						EventDailyCount.class)
+				.setParameter("from", from)
+				.setParameter("until", until)
+				.setReadOnly(true)
+				.getResultList()
+				.forEach(count -> counts.put(count.getDay(), count.getEventCount()));
+		return counts;
+	}
+
+	/**
+	 * the same as {@link #countsPerDay(Session, LocalDate, LocalDate)}, counted from the Events table
+	 */
+	public static Map<LocalDate, Long> countsPerDayByScan(Session session, LocalDate from, LocalDate until) {
+		Map<LocalDate, Long> counts = new LinkedHashMap<>();
+		session.createSelectionQuery("select cast(e.date as LocalDate), count(e) from Event e"
+						+ " where e.date >= :from and e.date < :until"
+						+ " group by cast(e.date as LocalDate) order by cast(e.date as LocalDate)", Object[].class)
+				.setParameter("from", from.atStartOfDay())
+				.setParameter("until", until.atStartOfDay())
+				.getResultList()
+				.forEach(row -> counts.put((LocalDate) row[0], (Long) row[1]));
+		return counts;
+	}
+
+}
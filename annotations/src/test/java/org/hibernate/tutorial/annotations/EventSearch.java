@@ -0,0 +1,117 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.restriction.Restriction;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+/**
+ * searches events by a title prefix and a date range, any of them optional:
+ * <pre>
+ * List&lt;Event&gt; events = EventSearch.events()
+ *         .titleStartsWith("Concert")
+ *         .from(start)
+ *         .until(end)
+ *         .list(session);
+ * </pre>
+ * The date range is half open, it includes from and excludes until, and uses the index on eventDate.
+ * <p>
+ * The criteria that are set are composed into one {@link Restriction}, which {@link #list(Session)} runs
+ * as a criteria query. Hibernate translates a criteria query again every time it runs, unless
+ * hibernate.criteria.plan_cache_enabled is set, as in hibernate.properties. Then it caches the translation
+ * like that of an HQL query, and running the same search again takes the plan from the cache.
+ */
+public final class EventSearch {
+
+	private final String titlePrefix;
+	private final LocalDateTime from;
+	private final LocalDateTime until;
+
+	private EventSearch(String titlePrefix, LocalDateTime from, LocalDateTime until) {
+		this.titlePrefix = titlePrefix;
+		this.from = from;
+		this.until = until;
+	}
+
+	public static EventSearch events() {
+		return new EventSearch(null, null, null);
+	}
+
+	public EventSearch titleStartsWith(String titlePrefix) {
+		return new EventSearch(titlePrefix, from, until);
+	}
+
+	public EventSearch from(LocalDateTime from) {
+		return new EventSearch(titlePrefix, from, until);
+	}
+
+	public EventSearch until(LocalDateTime until) {
+		return new EventSearch(titlePrefix, from, until);
+	}
+
+	/**
+	 * the search as restrictions on the attributes of {@link Event}, all of which have to hold
+	 */
+	public Restriction<Event> restriction(SessionFactory sessionFactory) {
+		EntityType<Event> event = sessionFactory.getMetamodel().entity(Event.class);
+		List<Restriction<Event>> restrictions = new ArrayList<>();
+		if (titlePrefix != null) {
+			restrictions.add(new TitlePrefix(event.getSingularAttribute("title", String.class), titlePrefix, false));
+		}
+		if (from != null) {
+			restrictions.add(Restriction.greaterThanOrEqual(event.getSingularAttribute("date", LocalDateTime.class), from));
+		}
+		if (until != null) {
+			restrictions.add(Restriction.lessThan(event.getSingularAttribute("date", LocalDateTime.class), until));
+		}
+		return Restriction.all(restrictions);
+	}
+
+	public List<Event> list(Session session) {
+		CriteriaBuilder builder = session.getCriteriaBuilder();
+		CriteriaQuery<Event> criteria = builder.createQuery(Event.class);
+		Root<Event> root = criteria.from(Event.class);
+		criteria.where(restriction(session.getSessionFactory()).toPredicate(root, builder))
+				.orderBy(builder.asc(root.get("date")), builder.asc(root.get("id")));
+		return session.createQuery(criteria).getResultList();
+	}
+
+	/**
+	 * like {@link Restriction#startsWith}, but escapes the LIKE wildcards of the prefix itself rather than
+	 * depending on the escaping done by Hibernate, so "Concert_" matches "Concert_1" but not "Concert 1"
+	 */
+	private record TitlePrefix(SingularAttribute<Event, String> title, String prefix, boolean negate)
+			implements Restriction<Event> {
+
+		@Override
+		public Restriction<Event> negated() {
+			return new TitlePrefix(title, prefix, !negate);
+		}
+
+		@Override
+		public Predicate toPredicate(Root<? extends Event> root, CriteriaBuilder builder) {
+			Predicate like = builder.like(root.get(title), escapeLike(prefix) + "%", '\\');
+			return negate ? builder.not(like) : like;
+		}
+	}
+
+	// the escape character itself, _ and % match only themselves
+	static String escapeLike(String literal) {
+		return literal.replace("\\", "\\\\").replace("_", "\\_").replace("%", "\\%");
+	}
+
+}
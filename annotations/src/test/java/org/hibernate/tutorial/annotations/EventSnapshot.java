@@ -0,0 +1,201 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * copies the Events table to a file and back, for nightly copies of the table:
+ * <pre>
+ * long exported = EventSnapshot.export(sessionFactory, file);
+ * long imported = EventSnapshot.importInto(otherSessionFactory, file, 50);
+ * </pre>
+ * The export scrolls through the events in a stateless session, so it holds neither the events nor the
+ * result in memory, and writes them through one reused buffer. The file starts with a marker, followed
+ * by one record per event: its length, the id, the title as length-prefixed UTF-8, -1 for none, and the
+ * date as seconds and nanoseconds, if it has one.
+ * <p>
+ * The import keeps the ids, it upserts the events with a stateless session in JDBC batches, committing
+ * every {@value #COMMIT_INTERVAL} events. The id generator of the target table has to be past the
+ * imported ids, and {@link EventDailyRollup} does not see the imported events, rebuild it afterwards.
+ */
+public final class EventSnapshot {
+
+	private static final int MARKER = 0x45564e31; // EVN1
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int COMMIT_INTERVAL = 10_000;
+	// the id, the title length and the date flag
+	private static final int MIN_RECORD_LENGTH = Long.BYTES + Integer.BYTES + 1;
+
+	private EventSnapshot() {
+	}
+
+	/**
+	 * @return the number of exported events
+	 */
+	public static long export(SessionFactory sessionFactory, Path file) throws IOException {
+		try (StatelessSession session = sessionFactory.openStatelessSession();
+				FileChannel channel = FileChannel.open(file, CREATE, TRUNCATE_EXISTING, WRITE);
+				ScrollableResults<Object[]> rows = session
+						.createSelectionQuery("select e.id, e.title, e.date from Event e order by e.id", Object[].class)
+						.setFetchSize(1_000)
+						.scroll(ScrollMode.FORWARD_ONLY)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer.putInt(MARKER);
+			long count = 0;
+			while (rows.next()) {
+				Object[] row = rows.get();
+				byte[] title = row[1] == null ? null : ((String) row[1]).getBytes(UTF_8);
+				LocalDateTime date = (LocalDateTime) row[2];
+				// titles are limited by their column, so a record always fits into the buffer
+				int length = Long.BYTES + Integer.BYTES + (title == null ? 0 : title.length)
+						+ 1 + (date == null ? 0 : Long.BYTES + Integer.BYTES);
+				if (buffer.remaining() < Integer.BYTES + length) {
+					write(channel, buffer);
+				}
+				buffer.putInt(length).putLong((Long) row[0]);
+				if (title == null) {
+					buffer.putInt(-1);
+				}
+				else {
+					buffer.putInt(title.length).put(title);
+				}
+				if (date == null) {
+					buffer.put((byte) 0);
+				}
+				else {
+					buffer.put((byte) 1).putLong(date.toEpochSecond(ZoneOffset.UTC)).putInt(date.getNano());
+				}
+				count++;
+			}
+			write(channel, buffer);
+			return count;
+		}
+	}
+
+	/**
+	 * @return the number of imported events
+	 */
+	public static long importInto(SessionFactory sessionFactory, Path file, int batchSize) throws IOException {
+		try (StatelessSession session = sessionFactory.openStatelessSession();
+				FileChannel channel = FileChannel.open(file, READ)) {
+			session.setJdbcBatchSize(batchSize);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			channel.read(buffer);
+			buffer.flip();
+			if (buffer.remaining() < Integer.BYTES || buffer.getInt() != MARKER) {
+				throw new IOException("Not an event snapshot: " + file);
+			}
+
+			Transaction transaction = session.beginTransaction();
+			try {
+				long count = 0;
+				while (nextRecord(channel, buffer, file)) {
+					int length = buffer.getInt();
+					int end = buffer.position() + length;
+					long id = buffer.getLong();
+					String title = null;
+					int titleLength = buffer.getInt();
+					if (titleLength < -1 || titleLength > end - buffer.position() - 1) {
+						throw corrupt(file, channel, buffer, "title length " + titleLength);
+					}
+					if (titleLength >= 0) {
+						byte[] bytes = new byte[titleLength];
+						buffer.get(bytes);
+						title = new String(bytes, UTF_8);
+					}
+					LocalDateTime date = null;
+					byte hasDate = buffer.get();
+					if (hasDate == 1 && end - buffer.position() == Long.BYTES + Integer.BYTES) {
+						date = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+					}
+					else if (hasDate != 0 || buffer.position() != end) {
+						throw corrupt(file, channel, buffer, "date of a record of " + length + " bytes");
+					}
+					Event event = new Event(title, date);
+					event.setId(id);
+					session.upsert(event);
+
+					if (++count % COMMIT_INTERVAL == 0) {
+						transaction.commit();
+						transaction = session.beginTransaction();
+					}
+				}
+				transaction.commit();
+				return count;
+			}
+			catch (RuntimeException | IOException e) {
+				if (transaction.isActive()) {
+					transaction.rollback();
+				}
+				throw e;
+			}
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// reads until the buffer holds the whole next record, false at the end of the file
+	private static boolean nextRecord(FileChannel channel, ByteBuffer buffer, Path file) throws IOException {
+		while (buffer.remaining() < Integer.BYTES
+				|| buffer.remaining() < Integer.BYTES + recordLength(channel, buffer, file)) {
+			buffer.compact();
+			int read = channel.read(buffer);
+			buffer.flip();
+			if (read < 0) {
+				if (buffer.hasRemaining()) {
+					throw new EOFException("The snapshot " + file + " ends within the record at offset "
+							+ offset(channel, buffer));
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the length prefix of the next record, which has to fit into the buffer, or reading it would never end
+	private static int recordLength(FileChannel channel, ByteBuffer buffer, Path file) throws IOException {
+		int length = buffer.getInt(buffer.position());
+		if (length < MIN_RECORD_LENGTH || length > buffer.capacity() - Integer.BYTES) {
+			throw corrupt(file, channel, buffer, "record length " + length);
+		}
+		return length;
+	}
+
+	private static IOException corrupt(Path file, FileChannel channel, ByteBuffer buffer, String what)
+			throws IOException {
+		return new IOException("Corrupt snapshot " + file + ", " + what + " before offset " + offset(channel, buffer));
+	}
+
+	// the offset in the file of the buffer's position
+	private static long offset(FileChannel channel, ByteBuffer buffer) throws IOException {
+		return channel.position() - buffer.remaining();
+	}
+
+}
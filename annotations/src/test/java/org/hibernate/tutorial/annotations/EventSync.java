@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.util.Collection;
+
+import org.hibernate.SessionFactory;
+
+/**
+ * writes events received from another system, whether they are already in the database or not.
+ * {@link org.hibernate.Session#merge(Object)} selects every detached event before it updates it,
+ * an upsert is a single MERGE statement per event, executed by a stateless session in batches:
+ * <pre>
+ * EventSync.upsert(sessionFactory, receivedEvents, 50);
+ * </pre>
+ * The events need their id, new ones included. Ids of new events have to lie outside of the range
+ * the id generator of the Events table hands out, or a later persist will collide with them.
+ * <p>
+ * A stateless session knows nothing about the rows it replaces, so the upserts are not seen by
+ * {@link EventDailyRollup}, rebuild it after a sync.
+ */
+public final class EventSync {
+
+	private EventSync() {
+	}
+
+	public static void upsert(SessionFactory sessionFactory, Collection<Event> events, int batchSize) {
+		sessionFactory.inStatelessTransaction(session -> {
+			session.setJdbcBatchSize(batchSize);
+			for (Event event : events) {
+				if (event.getId() == null) {
+					throw new IllegalArgumentException("An upserted event needs an id: " + event.getTitle());
+				}
+				session.upsert(event);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,298 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.annotations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.stat.Statistics;
+
+import junit.framework.TestCase;
+
+import static java.lang.System.out;
+
+/**
+ * Compares the query strategies illustrated in {@link HibernateIllustrationTest}.
+ * The printed numbers are what matters. The data set is small by default,
+ * pass e.g. -Dbenchmark.events=1000000 to measure a realistic size.
+ */
+public class HibernateBenchmarkTest extends TestCase {
+	private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+	private final int eventCount = Integer.getInteger("benchmark.events", 20_000);
+	private final int searchCount = Integer.getInteger("benchmark.searches", 2_000);
+
+	private SessionFactory buildSessionFactory(Map<String, Object> settings) {
+		return buildSessionFactory(settings, false);
+	}
+
+	private SessionFactory buildSessionFactory(Map<String, Object> settings, boolean dailyRollup) {
+		BootstrapServiceRegistryBuilder bootstrap = new BootstrapServiceRegistryBuilder();
+		if (dailyRollup) {
+			bootstrap.applyIntegrator(new EventDailyRollup());
+		}
+		final StandardServiceRegistry registry =
+				new StandardServiceRegistryBuilder(bootstrap.build())
+						// printing every statement would dominate the measurements
+						.applySetting("hibernate.show_sql", false)
+						.applySetting("hibernate.connection.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1")
+						.applySettings(settings)
+						.build();
+		try {
+			return new MetadataSources(registry)
+					.addAnnotatedClass(Event.class)
+					.addAnnotatedClass(EventDailyCount.class)
+					.buildMetadata()
+					.buildSessionFactory();
+		}
+		catch (Exception e) {
+			StandardServiceRegistryBuilder.destroy(registry);
+			throw e;
+		}
+	}
+
+	private void createEvents(SessionFactory sessionFactory) {
+		sessionFactory.inStatelessTransaction(session -> {
+			session.setJdbcBatchSize(50);
+			for (int i = 0; i < eventCount; i++) {
+				// about a hundred events per day
+				session.insert(new Event((i % 2 == 0 ? "Concert " : "Lecture ") + i, START.plusMinutes(i * 14L)));
+			}
+		});
+	}
+
+	private static long measure(String label, Runnable work) {
+		long start = System.nanoTime();
+		work.run();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		out.printf("[benchmark] %-50s %8d ms%n", label, millis);
+		return millis;
+	}
+
+	private void search(SessionFactory sessionFactory, BiFunction<EventSearch, Session, ?> query) {
+		sessionFactory.inTransaction(session -> {
+			for (int i = 0; i < searchCount; i++) {
+				LocalDateTime day = START.plusDays(i % 100);
+				query.apply(EventSearch.events().titleStartsWith("Concert").from(day).until(day.plusDays(1)), session);
+				// the found events are not what is measured
+				session.clear();
+			}
+		});
+	}
+
+	public void testQueryPlanCache() {
+		// without the cache every search is translated again
+		Map<String, Map<String, Object>> caches = new LinkedHashMap<>();
+		caches.put("plan cache", Map.of());
+		caches.put("plan cache disabled", Map.of("hibernate.query.plan_cache_enabled", false));
+
+		for (Map.Entry<String, Map<String, Object>> cache : caches.entrySet()) {
+			Map<String, Object> settings = new LinkedHashMap<>(cache.getValue());
+			settings.put("hibernate.generate_statistics", true);
+			SessionFactory sessionFactory = buildSessionFactory(settings);
+			try {
+				createEvents(sessionFactory);
+				Statistics statistics = sessionFactory.getStatistics();
+				statistics.clear();
+				measure(searchCount + " searches, " + cache.getKey(),
+						() -> search(sessionFactory, EventSearch::list));
+				out.println("plan cache hits: " + statistics.getQueryPlanCacheHitCount()
+						+ ", misses: " + statistics.getQueryPlanCacheMissCount());
+			}
+			finally {
+				sessionFactory.close();
+			}
+		}
+	}
+
+	public void testDateRangeIndex() {
+		SessionFactory sessionFactory = buildSessionFactory(Map.of());
+		try {
+			createEvents(sessionFactory);
+			measure(searchCount + " date range searches, indexed",
+					() -> search(sessionFactory, EventSearch::list));
+
+			sessionFactory.inTransaction(session ->
+					session.createNativeMutationQuery("drop index idx_events_eventdate").executeUpdate());
+			measure(searchCount + " date range searches, unindexed",
+					() -> search(sessionFactory, EventSearch::list));
+		}
+		finally {
+			sessionFactory.close();
+		}
+	}
+
+	public void testDailyRollup() {
+		SessionFactory sessionFactory = buildSessionFactory(Map.of(), true);
+		try {
+			createEvents(sessionFactory);
+			// the events were inserted by a stateless session, which the rollup does not see
+			sessionFactory.inTransaction(EventDailyRollup::rebuild);
+			LocalDate firstDay = START.toLocalDate();
+			LocalDate lastDay = START.plusMinutes(eventCount * 14L).toLocalDate().plusDays(1);
+			int dashboardCount = Integer.getInteger("benchmark.dashboards", 200);
+
+			// a dashboard showing the whole history
+			Map<LocalDate, Long> scanned = new LinkedHashMap<>();
+			measure(dashboardCount + " dashboards, group by events", () -> sessionFactory.inTransaction(session -> {
+				for (int i = 0; i < dashboardCount; i++) {
+					scanned.putAll(EventDailyRollup.countsPerDayByScan(session, firstDay, lastDay));
+				}
+			}));
+			Map<LocalDate, Long> rolledUp = new LinkedHashMap<>();
+			measure(dashboardCount + " dashboards, rollup", () -> sessionFactory.inTransaction(session -> {
+				for (int i = 0; i < dashboardCount; i++) {
+					rolledUp.putAll(EventDailyRollup.countsPerDay(session, firstDay, lastDay));
+					session.clear();
+				}
+			}));
+			assertEquals(scanned, rolledUp);
+
+			// the price of the rollup is paid when writing
+			measure(eventCount / 10 + " inserts, rollup maintained", () -> sessionFactory.inTransaction(session -> {
+				for (int i = 0; i < eventCount / 10; i++) {
+					session.persist(new Event("Another event " + i, START.plusMinutes(i * 140L)));
+				}
+			}));
+		}
+		finally {
+			sessionFactory.close();
+		}
+	}
+
+	public void testUpsert() {
+		SessionFactory sessionFactory = buildSessionFactory(Map.of("hibernate.generate_statistics", true));
+		try {
+			createEvents(sessionFactory);
+			List<Event> existing = new ArrayList<>();
+			sessionFactory.inStatelessSession(session ->
+					existing.addAll(session.createSelectionQuery("from Event order by id", Event.class).getResultList()));
+			existing.forEach(event -> event.setTitle(event.getTitle() + " changed"));
+			long maxId = existing.get(existing.size() - 1).getId();
+			Statistics statistics = sessionFactory.getStatistics();
+
+			for (String rows : List.of("existing", "new")) {
+				// merge inserts new events with an id from the generator, upsert with the id they came with
+				List<Event> forMerge = new ArrayList<>();
+				List<Event> forUpsert = new ArrayList<>();
+				for (Event event : existing) {
+					if (rows.equals("existing")) {
+						forMerge.add(event);
+						forUpsert.add(event);
+					}
+					else {
+						forMerge.add(new Event(event.getTitle(), event.getDate()));
+						Event received = new Event(event.getTitle(), event.getDate());
+						received.setId(maxId * 10 + event.getId());
+						forUpsert.add(received);
+					}
+				}
+
+				statistics.clear();
+				measure(forMerge.size() + " " + rows + " events, merge", () -> sessionFactory.inTransaction(session -> {
+					session.setJdbcBatchSize(50);
+					for (int i = 0; i < forMerge.size(); i++) {
+						session.merge(forMerge.get(i));
+						if (i % 1_000 == 0) {
+							// keep the persistence context small
+							session.flush();
+							session.clear();
+						}
+					}
+				}));
+				out.println("statements: " + statistics.getPrepareStatementCount());
+
+				for (int batchSize : new int[] { 1, 50 }) {
+					statistics.clear();
+					measure(forUpsert.size() + " " + rows + " events, upsert, batches of " + batchSize,
+							() -> EventSync.upsert(sessionFactory, forUpsert, batchSize));
+					out.println("statements: " + statistics.getPrepareStatementCount());
+				}
+			}
+		}
+		finally {
+			sessionFactory.close();
+		}
+	}
+
+	/**
+	 * the highest heap usage while the work runs, summed over the heap's pools, so rather too high
+	 */
+	private static long peakHeap(Runnable work) {
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.toList();
+		System.gc();
+		pools.forEach(MemoryPoolMXBean::resetPeakUsage);
+		work.run();
+		return pools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+	}
+
+	public void testSnapshot() throws IOException {
+		// H2 would otherwise read the whole result of the export before the first row is scrolled to
+		SessionFactory sessionFactory = buildSessionFactory(Map.of("hibernate.connection.url",
+				"jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;LAZY_QUERY_EXECUTION=1"));
+		try {
+			createEvents(sessionFactory);
+			Path file = Files.createTempFile("events", ".bin");
+			try {
+				long[] millis = new long[1];
+				long heap = peakHeap(() -> millis[0] = measure(eventCount + " events, export", () -> {
+					try {
+						EventSnapshot.export(sessionFactory, file);
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+				out.printf("export: %.0f rows/s, %d bytes per event, peak heap %d MB%n",
+						eventCount * 1000d / Math.max(1, millis[0]), Files.size(file) / eventCount, heap >> 20);
+
+				// for comparison, what reading the table as entities holds in memory, unless it does not fit
+				if (eventCount <= 1_000_000) {
+					heap = peakHeap(() -> sessionFactory.inStatelessSession(session -> assertEquals(eventCount,
+							session.createSelectionQuery("from Event", Event.class).getResultList().size())));
+					out.printf("all events as entities: peak heap %d MB%n", heap >> 20);
+				}
+
+				sessionFactory.inTransaction(session -> session.createMutationQuery("delete from Event").executeUpdate());
+				heap = peakHeap(() -> millis[0] = measure(eventCount + " events, import", () -> {
+					try {
+						assertEquals(eventCount, EventSnapshot.importInto(sessionFactory, file, 50));
+					}
+					catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}));
+				out.printf("import: %.0f rows/s, peak heap %d MB%n", eventCount * 1000d / Math.max(1, millis[0]), heap >> 20);
+			}
+			finally {
+				Files.delete(file);
+			}
+		}
+		finally {
+			sessionFactory.close();
+		}
+	}
+
+}
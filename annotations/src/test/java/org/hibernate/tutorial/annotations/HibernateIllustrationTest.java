@@ -4,18 +4,32 @@
  */
 package org.hibernate.tutorial.annotations;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.SessionEventListener;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
 import org.hibernate.boot.registry.StandardServiceRegistry;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.query.Query;
 import org.hibernate.query.criteria.HibernateCriteriaBuilder;
-import org.hibernate.query.restriction.Restriction;
+import org.hibernate.stat.Statistics;
 
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.criteria.CriteriaQuery;
@@ -23,6 +37,7 @@ import jakarta.persistence.criteria.Root;
 import junit.framework.TestCase;
 
 import static java.lang.System.out;
+import static java.nio.file.StandardOpenOption.WRITE;
 import static java.time.LocalDateTime.now;
 import static org.junit.Assert.assertThrows;
 
@@ -39,20 +54,31 @@ public class HibernateIllustrationTest extends TestCase {
 	@Override
 	protected void setUp() {
 		// A SessionFactory is set up once for an application!
+		sessionFactory = buildSessionFactory(false, Map.of());
+	}
+
+	private static SessionFactory buildSessionFactory(boolean dailyRollup, Map<String, Object> settings) {
+		BootstrapServiceRegistryBuilder bootstrap = new BootstrapServiceRegistryBuilder();
+		if (dailyRollup) {
+			// counts the events per day, see EventDailyRollup
+			bootstrap.applyIntegrator(new EventDailyRollup());
+		}
 		final StandardServiceRegistry registry =
-				new StandardServiceRegistryBuilder()
+				new StandardServiceRegistryBuilder(bootstrap.build())
+						.applySettings(settings)
 						.build();
 		try {
-			sessionFactory =
-					new MetadataSources(registry)
-							.addAnnotatedClass(Event.class)
-							.buildMetadata()
-							.buildSessionFactory();
+			return new MetadataSources(registry)
+					.addAnnotatedClass(Event.class)
+					.addAnnotatedClass(EventDailyCount.class)
+					.buildMetadata()
+					.buildSessionFactory();
 		}
 		catch (Exception e) {
 			// The registry would be destroyed by the SessionFactory, but we
 			// had trouble building the SessionFactory so destroy it manually.
 			StandardServiceRegistryBuilder.destroy(registry);
+			throw e;
 		}
 	}
 
@@ -63,6 +89,20 @@ public class HibernateIllustrationTest extends TestCase {
 		}
 	}
 
+	/**
+	 * like {@link SessionFactory#inTransaction(Consumer)}, for units of work that only read.
+	 * Entities are loaded read-only, so no snapshot of their loaded state is kept,
+	 * and the commit neither flushes nor dirty checks. Changes to the entities are discarded.
+	 * The UnitOfWork of the entitymanager tutorial also puts the JDBC connection into read-only mode.
+	 */
+	void inReadOnlyTransaction(Consumer<Session> work) {
+		sessionFactory.inTransaction(session -> {
+			session.setDefaultReadOnly(true);
+			session.setHibernateFlushMode(FlushMode.MANUAL);
+			work.accept(session);
+		});
+	}
+
 	public void testBasicUsage() {
 		// create a couple of events...
 		sessionFactory.inTransaction(session -> {
@@ -196,5 +236,233 @@ public class HibernateIllustrationTest extends TestCase {
 		});
 		
 	}
-	
+
+	public void testReadOnlyTransaction() {
+		sessionFactory.inTransaction(session -> {
+			session.persist(new Event("Our very first event!", now()));
+		});
+
+		inReadOnlyTransaction(session -> {
+			Event event = session.createSelectionQuery("from Event", Event.class).getSingleResult();
+			assertTrue(session.isReadOnly(event));
+			// this change is neither dirty checked nor flushed
+			event.setTitle("A changed title");
+		});
+
+		sessionFactory.inTransaction(session -> {
+			Event event = session.createSelectionQuery("from Event", Event.class).getSingleResult();
+			assertEquals("Our very first event!", event.getTitle());
+		});
+	}
+
+	public void testEventSearch() {
+		LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+		sessionFactory.inTransaction(session -> {
+			for (int day = 0; day < 10; day++) {
+				session.persist(new Event((day % 2 == 0 ? "Concert " : "Lecture ") + day, start.plusDays(day)));
+			}
+			// a wildcard in the prefix has to match itself
+			session.persist(new Event("Concert_100%", start.plusDays(3)));
+			// and not any other character, "Concert_" as a pattern would match this one too
+			session.persist(new Event("ConcertX", start.plusDays(8)));
+		});
+
+		EventSearch concertsOfTheFirstWeek = EventSearch.events()
+				.titleStartsWith("Concert")
+				.from(start)
+				.until(start.plusWeeks(1));
+		Statistics statistics = sessionFactory.getStatistics();
+		statistics.clear();
+		sessionFactory.inTransaction(session -> {
+			List<Event> events = concertsOfTheFirstWeek.list(session);
+			assertEquals(List.of("Concert 0", "Concert 2", "Concert_100%", "Concert 4", "Concert 6"),
+					events.stream().map(Event::getTitle).collect(Collectors.toList()));
+
+			assertEquals(List.of("Concert_100%"), EventSearch.events().titleStartsWith("Concert_").list(session)
+					.stream().map(Event::getTitle).collect(Collectors.toList()));
+		});
+
+		out.println("---same search again");
+		long hits = statistics.getQueryPlanCacheHitCount();
+		long misses = statistics.getQueryPlanCacheMissCount();
+		sessionFactory.inTransaction(session -> assertEquals(5, concertsOfTheFirstWeek.list(session).size()));
+		// the translated query of the first search was reused
+		assertTrue(statistics.getQueryPlanCacheHitCount() > hits);
+		assertEquals(misses, statistics.getQueryPlanCacheMissCount());
+	}
+
+	public void testEventDailyRollup() {
+		// only here, in the other tests every flushed event would update the count of its day, too
+		sessionFactory.close();
+		sessionFactory = buildSessionFactory(true, Map.of());
+
+		LocalDate firstDay = LocalDate.of(2025, 1, 1);
+		LocalDate lastDay = firstDay.plusDays(10);
+		List<Long> ids = new ArrayList<>();
+		sessionFactory.inTransaction(session -> {
+			for (int i = 0; i < 30; i++) {
+				Event event = new Event("Event " + i, firstDay.plusDays(i % 7).atTime(i % 24, 0));
+				session.persist(event);
+				ids.add(event.getId());
+			}
+		});
+
+		out.println("---move, delete and add events");
+		sessionFactory.inTransaction(session -> {
+			// to another day, and within the same day
+			session.find(Event.class, ids.get(0)).setDate(firstDay.plusDays(8).atStartOfDay());
+			session.find(Event.class, ids.get(1)).setDate(firstDay.plusDays(1).atTime(23, 59));
+			session.remove(session.find(Event.class, ids.get(2)));
+			session.persist(new Event("A late event", firstDay.plusDays(9).atStartOfDay()));
+		});
+		// a rolled back transaction leaves the counts alone
+		sessionFactory.inSession(session -> {
+			session.getTransaction().begin();
+			session.persist(new Event("A cancelled event", firstDay.atStartOfDay()));
+			session.flush();
+			session.getTransaction().rollback();
+		});
+		sessionFactory.inTransaction(session -> {
+			Map<LocalDate, Long> counted = EventDailyRollup.countsPerDayByScan(session, firstDay, lastDay);
+			assertEquals(counted, EventDailyRollup.countsPerDay(session, firstDay, lastDay));
+			assertEquals(30L, counted.values().stream().mapToLong(Long::longValue).sum());
+		});
+
+		out.println("---bulk delete and rebuild");
+		sessionFactory.inTransaction(session -> {
+			// bulk statements bypass the listeners
+			session.createMutationQuery("delete from Event e where e.title like 'Event 1%'").executeUpdate();
+			assertFalse(EventDailyRollup.countsPerDayByScan(session, firstDay, lastDay)
+					.equals(EventDailyRollup.countsPerDay(session, firstDay, lastDay)));
+			EventDailyRollup.rebuild(session);
+			assertEquals(EventDailyRollup.countsPerDayByScan(session, firstDay, lastDay),
+					EventDailyRollup.countsPerDay(session, firstDay, lastDay));
+		});
+	}
+
+	public void testUpsert() {
+		sessionFactory.close();
+		sessionFactory = buildSessionFactory(false,
+				Map.of(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, JdbcExecutions.class.getName()));
+
+		sessionFactory.inTransaction(session -> {
+			session.persist(new Event("A synchronized event", now()));
+		});
+		List<Event> received = new ArrayList<>();
+		sessionFactory.inTransaction(session -> {
+			received.addAll(session.createSelectionQuery("from Event", Event.class).getResultList());
+		});
+		// the received state of the existing event, and events that are new here,
+		// more of them than fit into one batch
+		int batchSize = 10;
+		received.get(0).setTitle("A changed synchronized event");
+		for (int i = 0; i < 2 * batchSize; i++) {
+			Event newEvent = new Event("A new synchronized event " + i, now());
+			newEvent.setId(received.get(0).getId() + 1_000_000 + i);
+			received.add(newEvent);
+		}
+
+		Statistics statistics = sessionFactory.getStatistics();
+		out.println("---merge selects before it updates");
+		statistics.clear();
+		JdbcExecutions.clear();
+		sessionFactory.inTransaction(session -> session.merge(received.get(0)));
+		assertEquals(2, statistics.getPrepareStatementCount());
+		assertEquals(2, JdbcExecutions.statements.get());
+
+		out.println("---upsert does not, and sends the events in batches");
+		JdbcExecutions.clear();
+		EventSync.upsert(sessionFactory, received, batchSize);
+		// 21 events: two full batches and one with the last event, not a single statement on its own
+		assertEquals(3, JdbcExecutions.batches.get());
+		assertEquals(0, JdbcExecutions.statements.get());
+
+		sessionFactory.inTransaction(session -> {
+			List<String> titles =
+					session.createSelectionQuery("select e.title from Event e order by e.id", String.class).getResultList();
+			assertEquals(1 + 2 * batchSize, titles.size());
+			assertEquals("A changed synchronized event", titles.get(0));
+			assertEquals("A new synchronized event " + (2 * batchSize - 1), titles.get(titles.size() - 1));
+		});
+		assertThrows(IllegalArgumentException.class,
+				() -> EventSync.upsert(sessionFactory, List.of(new Event("An event without id", now())), 1));
+	}
+
+	/**
+	 * counts the statements the sessions execute on their own and the JDBC batches they execute,
+	 * registered for every session with hibernate.session.events.auto
+	 */
+	public static class JdbcExecutions implements SessionEventListener {
+		static final AtomicInteger statements = new AtomicInteger();
+		static final AtomicInteger batches = new AtomicInteger();
+
+		static void clear() {
+			statements.set(0);
+			batches.set(0);
+		}
+
+		@Override
+		public void jdbcExecuteStatementStart() {
+			statements.incrementAndGet();
+		}
+
+		@Override
+		public void jdbcExecuteBatchStart() {
+			batches.incrementAndGet();
+		}
+	}
+
+	public void testSnapshot() throws IOException {
+		sessionFactory.inTransaction(session -> {
+			session.persist(new Event("A snapshot event", LocalDateTime.of(2025, 3, 1, 18, 30, 0, 123_456_789)));
+			session.persist(new Event("Ein Ereignis f\u00fcr den Schnappschuss", null));
+			session.persist(new Event(null, LocalDateTime.of(2025, 3, 2, 9, 0)));
+		});
+		List<String> before = new ArrayList<>();
+		sessionFactory.inTransaction(session -> session.createSelectionQuery("from Event order by id", Event.class)
+				.getResultList()
+				.forEach(event -> before.add(event.getId() + " " + event.getTitle() + " " + event.getDate())));
+
+		Path file = Path.of("target", "events-snapshot-test.bin");
+		assertEquals(3, EventSnapshot.export(sessionFactory, file));
+		sessionFactory.inTransaction(session -> session.createMutationQuery("delete from Event").executeUpdate());
+		assertEquals(3, EventSnapshot.importInto(sessionFactory, file, 50));
+
+		List<String> after = new ArrayList<>();
+		sessionFactory.inTransaction(session -> session.createSelectionQuery("from Event order by id", Event.class)
+				.getResultList()
+				.forEach(event -> after.add(event.getId() + " " + event.getTitle() + " " + event.getDate())));
+		assertEquals(before, after);
+	}
+
+	public void testCorruptSnapshot() throws IOException {
+		sessionFactory.inTransaction(session -> {
+			session.persist(new Event("A snapshot event", LocalDateTime.of(2025, 3, 1, 18, 30)));
+			session.persist(new Event("Another snapshot event", null));
+		});
+		Path file = Path.of("target", "events-snapshot-corrupt-test.bin");
+		assertEquals(2, EventSnapshot.export(sessionFactory, file));
+		sessionFactory.inTransaction(session -> session.createMutationQuery("delete from Event").executeUpdate());
+
+		out.println("---ends within the last record");
+		try (FileChannel channel = FileChannel.open(file, WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+		assertThrows(EOFException.class, () -> EventSnapshot.importInto(sessionFactory, file, 50));
+
+		out.println("---record lengths that do not fit into the buffer");
+		// the length of the first record follows the marker
+		for (int length : new int[] { 1 << 20, -1 }) {
+			try (FileChannel channel = FileChannel.open(file, WRITE)) {
+				channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, length), Integer.BYTES);
+			}
+			IOException e = assertThrows(IOException.class, () -> EventSnapshot.importInto(sessionFactory, file, 50));
+			assertTrue(e.getMessage(), e.getMessage().contains("record length " + length + " before offset 4"));
+		}
+
+		// nothing was imported
+		sessionFactory.inTransaction(session -> assertEquals(0L,
+				session.createSelectionQuery("select count(*) from Event", Long.class).getSingleResult()));
+	}
+
 }
@@ -0,0 +1,80 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2010, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.tutorial.hbm;
+
+import java.util.Properties;
+
+import org.hibernate.cfg.Configuration;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.mapping.SimpleValue;
+
+/**
+ * changes the id generator of {@link Event} from the one in Event.hbm.xml before the SessionFactory is built,
+ * so a test can compare the generators, or give a SessionFactory its own block size:
+ * <pre>
+ * Configuration cfg = new Configuration().configure();
+ * EventIdGenerators.pooledLo( cfg, 1000 );
+ * SessionFactory sessionFactory = cfg.buildSessionFactory();
+ * </pre>
+ */
+public final class EventIdGenerators {
+
+	private EventIdGenerators() {
+	}
+
+	/**
+	 * reserves blocks of the given number of ids, one sequence call per block
+	 */
+	public static Configuration pooledLo(Configuration cfg, int blockSize) {
+		Properties params = eventId( cfg ).getIdentifierGeneratorProperties();
+		params.setProperty( SequenceStyleGenerator.OPT_PARAM, "pooled-lo" );
+		params.setProperty( SequenceStyleGenerator.INCREMENT_PARAM, String.valueOf( blockSize ) );
+		return cfg;
+	}
+
+	/**
+	 * one sequence call per id
+	 */
+	public static Configuration sequence(Configuration cfg) {
+		Properties params = eventId( cfg ).getIdentifierGeneratorProperties();
+		params.setProperty( SequenceStyleGenerator.OPT_PARAM, "none" );
+		params.setProperty( SequenceStyleGenerator.INCREMENT_PARAM, "1" );
+		return cfg;
+	}
+
+	/**
+	 * the former generator, max(EVENT_ID) at startup and counting up in memory, only safe for a single SessionFactory
+	 */
+	public static Configuration increment(Configuration cfg) {
+		eventId( cfg ).setIdentifierGeneratorStrategy( "increment" );
+		return cfg;
+	}
+
+	private static SimpleValue eventId(Configuration cfg) {
+		// binds the mapping documents, the SessionFactory is built from the adjusted mappings
+		cfg.buildMappings();
+		return (SimpleValue) cfg.getClassMapping( Event.class.getName() ).getIdentifier();
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * Copyright (c) 2010, Red Hat Inc. or third-party contributors as
+ * indicated by the @author tags or express copyright attribution
+ * statements applied by the authors.  All third-party contributions are
+ * distributed under license by Red Hat Inc.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, write to:
+ * Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor
+ * Boston, MA  02110-1301  USA
+ */
+package org.hibernate.tutorial.hbm;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * Compares the id generators of {@link EventIdGenerators}. The printed numbers are what matters.
+ * Pass e.g. -Dbenchmark.events=1000000 to measure a realistic size.
+ */
+public class NativeApiBenchmarkTest extends TestCase {
+
+	private final int eventCount = Integer.getInteger( "benchmark.events", 20000 );
+
+	public void testIdGenerators() {
+		Map<String, Configuration> generators = new LinkedHashMap<String, Configuration>();
+		generators.put( "increment", EventIdGenerators.increment( configuration() ) );
+		generators.put( "sequence", EventIdGenerators.sequence( configuration() ) );
+		generators.put( "pooled-lo, blocks of 50", EventIdGenerators.pooledLo( configuration(), 50 ) );
+		generators.put( "pooled-lo, blocks of 1000", EventIdGenerators.pooledLo( configuration(), 1000 ) );
+
+		for ( Map.Entry<String, Configuration> generator : generators.entrySet() ) {
+			SessionFactory sessionFactory = generator.getValue().buildSessionFactory();
+			try {
+				long start = System.nanoTime();
+				Session session = sessionFactory.openSession();
+				session.beginTransaction();
+				for ( int i = 0; i < eventCount; i++ ) {
+					session.save( new Event( "Event " + i, new Date() ) );
+					if ( ( i + 1 ) % 50 == 0 ) {
+						// keep the session small, the ids are what is measured
+						session.flush();
+						session.clear();
+					}
+				}
+				session.getTransaction().commit();
+				session.close();
+				long millis = ( System.nanoTime() - start ) / 1000000;
+				System.out.println( String.format( "[benchmark] %-30s %8d events %8d ms %10.0f events/s",
+						generator.getKey(), eventCount, millis, eventCount * 1000.0 / Math.max( 1, millis ) ) );
+			}
+			finally {
+				sessionFactory.close();
+			}
+		}
+	}
+
+	private static Configuration configuration() {
+		return new Configuration()
+				.configure()
+				// printing every statement would dominate the measurements
+				.setProperty( "hibernate.show_sql", "false" );
+	}
+
+}
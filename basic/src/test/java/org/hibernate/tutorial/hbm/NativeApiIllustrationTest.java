@@ -23,14 +23,25 @@
  */
 package org.hibernate.tutorial.hbm;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.TestCase;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
 
 /**
  * Illustrates use of Hibernate native APIs.
@@ -74,4 +85,67 @@ public class NativeApiIllustrationTest extends TestCase {
         session.getTransaction().commit();
         session.close();
 	}
+
+	public void testIdBlocksAcrossSessionFactories() throws Exception {
+		// like several nodes of a cluster, each with its own SessionFactory on the same database
+		int nodes = 4;
+		final int threadsPerNode = 2;
+		final int eventsPerThread = 500;
+		// the increment_size of EVENTS_SEQ in Event.hbm.xml, the sequence created by setUp steps by as much
+		final int blockSize = 50;
+		List<SessionFactory> sessionFactories = new ArrayList<SessionFactory>();
+		for ( int i = 0; i < nodes; i++ ) {
+			Configuration cfg = EventIdGenerators.pooledLo( new Configuration().configure(), blockSize );
+			// only the SessionFactory of setUp creates the schema
+			cfg.setProperty( Environment.HBM2DDL_AUTO, "validate" );
+			sessionFactories.add( cfg.buildSessionFactory() );
+		}
+
+		final Set<Long> ids = Collections.synchronizedSet( new HashSet<Long>() );
+		// the node that handed out the ids of each block
+		final Map<Long, SessionFactory> blockOwners = Collections.synchronizedMap( new HashMap<Long, SessionFactory>() );
+		ExecutorService executor = Executors.newFixedThreadPool( nodes * threadsPerNode );
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for ( final SessionFactory node : sessionFactories ) {
+				for ( int t = 0; t < threadsPerNode; t++ ) {
+					futures.add( executor.submit( new Callable<Void>() {
+						public Void call() {
+							for ( int i = 0; i < eventsPerThread; i++ ) {
+								Session session = node.openSession();
+								session.beginTransaction();
+								Event event = new Event( "Event " + i, new Date() );
+								session.save( event );
+								session.getTransaction().commit();
+								session.close();
+								assertTrue( "duplicate id " + event.getId(), ids.add( event.getId() ) );
+								// pooled-lo hands out the sequence value and the blockSize - 1 ids after it
+								SessionFactory owner = blockOwners.put( ( event.getId() - 1 ) / blockSize, node );
+								assertTrue( "block of id " + event.getId() + " used by two nodes", owner == null || owner == node );
+							}
+							return null;
+						}
+					} ) );
+				}
+			}
+			for ( Future<?> future : futures ) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+			for ( SessionFactory node : sessionFactories ) {
+				node.close();
+			}
+		}
+
+		int total = nodes * threadsPerNode * eventsPerThread;
+		assertEquals( total, ids.size() );
+		// every node reserved blocks while the others did, one sequence call per block
+		assertEquals( total / blockSize, blockOwners.size() );
+		assertEquals( nodes, new HashSet<SessionFactory>( blockOwners.values() ).size() );
+		Session session = sessionFactory.openSession();
+		assertEquals( (long) total, session.createQuery( "select count(distinct e.id) from Event e" ).uniqueResult() );
+		session.close();
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import static java.lang.System.out;
+
+/**
+ * minimal timing and allocation measurement for {@link JPABenchmarkTest}.
+ * The benchmarks only run with the benchmarks profile, -Pbenchmarks. Pass e.g.
+ * -Dbenchmark.posts=100000 to change the size of a data set.
+ */
+final class Benchmark {
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	final String label;
+	final long nanos;
+	final long allocatedBytes;
+
+	private Benchmark(String label, long nanos, long allocatedBytes) {
+		this.label = label;
+		this.nanos = nanos;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	static int size(String name, int defaultSize) {
+		return Integer.getInteger("benchmark." + name, defaultSize);
+	}
+
+	static Benchmark measure(String label, Runnable work) {
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		work.run();
+		long nanos = System.nanoTime() - start;
+		long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		Benchmark benchmark = new Benchmark(label, nanos, allocated);
+		out.println(benchmark);
+		return benchmark;
+	}
+
+	/**
+	 * the heap in use after full collections, the live objects. The difference of two calls is what was
+	 * retained in between, as long as the work between them keeps its results reachable
+	 */
+	static long usedHeapAfterGc() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long used = Long.MAX_VALUE;
+		// a single collection may leave some garbage behind
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+		}
+		return used;
+	}
+
+	long millis() {
+		return nanos / 1_000_000;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[benchmark] %-40s %8d ms %12d KiB allocated", label, millis(), allocatedBytes / 1024);
+	}
+
+}
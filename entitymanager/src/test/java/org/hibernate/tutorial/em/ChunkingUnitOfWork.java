@@ -0,0 +1,142 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.function.Consumer;
+
+import org.hibernate.Session;
+import org.jboss.logging.Logger;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+/**
+ * a unit of work for large jobs. Every flush dirty checks all managed entities,
+ * so a job that keeps everything in the persistence context gets slower with every row.
+ * This one flushes and clears the persistence context whenever it holds a chunk of entities,
+ * optionally committing each chunk:
+ * <pre>
+ * new ChunkingUnitOfWork(entityManagerFactory).chunkSize(1000).run(chunked -> {
+ *     for (...) {
+ *         chunked.entityManager().persist(...);
+ *         chunked.step();
+ *     }
+ * });
+ * </pre>
+ * Entities loaded before the end of a chunk are detached afterwards.
+ */
+final class ChunkingUnitOfWork {
+
+	private static final Logger LOG = Logger.getLogger(ChunkingUnitOfWork.class);
+
+	private final EntityManagerFactory entityManagerFactory;
+	private int chunkSize = 1_000;
+	private boolean commitPerChunk;
+	private int sizeBudget = 10_000;
+
+	ChunkingUnitOfWork(EntityManagerFactory entityManagerFactory) {
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
+	/**
+	 * number of managed entities at which {@link Chunked#step()} ends the chunk
+	 */
+	ChunkingUnitOfWork chunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+		return this;
+	}
+
+	/**
+	 * commit at the end of every chunk, instead of once at the end of the job
+	 */
+	ChunkingUnitOfWork commitPerChunk(boolean commitPerChunk) {
+		this.commitPerChunk = commitPerChunk;
+		return this;
+	}
+
+	/**
+	 * number of managed entities and collections above which a warning is logged
+	 */
+	ChunkingUnitOfWork sizeBudget(int sizeBudget) {
+		this.sizeBudget = sizeBudget;
+		return this;
+	}
+
+	void run(Consumer<Chunked> work) {
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		EntityTransaction transaction = entityManager.getTransaction();
+		try {
+			transaction.begin();
+			work.accept(new Chunked(entityManager));
+			transaction.commit();
+		}
+		catch (Exception e) {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+			throw e;
+		}
+		finally {
+			entityManager.close();
+		}
+	}
+
+	final class Chunked {
+		private final EntityManager entityManager;
+		private final Session session;
+		private int completedChunks;
+		private boolean overBudget;
+
+		private Chunked(EntityManager entityManager) {
+			this.entityManager = entityManager;
+			this.session = entityManager.unwrap(Session.class);
+		}
+
+		EntityManager entityManager() {
+			return entityManager;
+		}
+
+		int managedEntityCount() {
+			return session.getStatistics().getEntityCount();
+		}
+
+		int managedCollectionCount() {
+			return session.getStatistics().getCollectionCount();
+		}
+
+		int completedChunks() {
+			return completedChunks;
+		}
+
+		/**
+		 * to be called after each item of the job, ends the chunk once it is full
+		 */
+		void step() {
+			int entities = managedEntityCount();
+			if (!overBudget && entities + managedCollectionCount() > sizeBudget) {
+				overBudget = true;
+				LOG.warnf("Persistence context holds %s entities and %s collections, above the budget of %s",
+						entities, managedCollectionCount(), sizeBudget);
+			}
+			if (entities >= chunkSize) {
+				endChunk();
+			}
+		}
+
+		void endChunk() {
+			entityManager.flush();
+			entityManager.clear();
+			if (commitPerChunk) {
+				EntityTransaction transaction = entityManager.getTransaction();
+				transaction.commit();
+				transaction.begin();
+			}
+			completedChunks++;
+			overBudget = false;
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * applies the named entity graphs of the entities as fetch plans.
+ * With fetch graph semantics the attributes in the graph are fetched,
+ * all other associations are treated as lazy, regardless of the mapping.
+ */
+public final class FetchPlans {
+
+	static final String FETCH_GRAPH = "jakarta.persistence.fetchgraph";
+
+	private FetchPlans() {
+	}
+
+	public static <T> T find(EntityManager entityManager, Class<T> entityClass, Object id, String plan) {
+		// getEntityGraph throws an IllegalArgumentException for an unknown plan
+		return entityManager.find(entityClass, id, Map.of(FETCH_GRAPH, entityManager.getEntityGraph(plan)));
+	}
+
+	public static <T> TypedQuery<T> apply(EntityManager entityManager, TypedQuery<T> query, String plan) {
+		return query.setHint(FETCH_GRAPH, entityManager.getEntityGraph(plan));
+	}
+
+}
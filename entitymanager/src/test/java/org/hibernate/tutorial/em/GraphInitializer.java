@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+
+/**
+ * initializes lazy associations of already loaded entities, so they can be used after the
+ * transaction is gone. Instead of touching the association of every entity on its own (N+1),
+ * every association path is initialized for all owners at once:
+ * <pre>
+ * GraphInitializer.initialize(entityManager, units, "houses", "houses.rooms", "houses.bulbs");
+ * </pre>
+ * issues one query for the houses of all units, then one for the rooms and one for the bulbs
+ * of all those houses. Missing intermediate paths are added, "houses.rooms" alone implies "houses".
+ * <p>
+ * As every association gets its own query, several bags of one entity can be filled without
+ * the cartesian product (or the MultipleBagFetchException) of join fetching them together:
+ * <pre>
+ * GraphInitializer.load(entityManager, House.class, houseIds, "rooms", "bulbs", "windows");
+ * </pre>
+ */
+public final class GraphInitializer {
+
+	// keeps the in list below the limit of common databases
+	static final int MAX_OWNERS_PER_QUERY = 1000;
+
+	private GraphInitializer() {
+	}
+
+	public static <T> List<T> load(EntityManager entityManager, Class<T> entityClass, Collection<?> ids, String... paths) {
+		String hql = "select o from " + entityManager.getMetamodel().entity(entityClass).getName() + " o where id(o) in :ids";
+		List<?> idList = new ArrayList<>(ids);
+		List<T> roots = new ArrayList<>();
+		for (int from = 0; from < idList.size(); from += MAX_OWNERS_PER_QUERY) {
+			roots.addAll(entityManager.createQuery(hql, entityClass)
+					.setParameter("ids", idList.subList(from, Math.min(from + MAX_OWNERS_PER_QUERY, idList.size())))
+					.getResultList());
+		}
+		initialize(entityManager, roots, paths);
+		return roots;
+	}
+
+	public static void initialize(EntityManager entityManager, Collection<?> roots, String... paths) {
+		// shallow paths first, so the owners of a path are known when it is initialized
+		Set<String> orderedPaths = new TreeSet<>(Comparator.comparingInt(GraphInitializer::depth)
+				.thenComparing(Comparator.naturalOrder()));
+		for (String path : paths) {
+			for (int dot = path.indexOf('.'); dot > 0; dot = path.indexOf('.', dot + 1)) {
+				orderedPaths.add(path.substring(0, dot));
+			}
+			orderedPaths.add(path);
+		}
+
+		Map<String, List<Object>> reached = new HashMap<>();
+		reached.put("", distinct(roots));
+		for (String path : orderedPaths) {
+			int dot = path.lastIndexOf('.');
+			List<Object> owners = reached.get(dot < 0 ? "" : path.substring(0, dot));
+			reached.put(path, initialize(entityManager, owners, path.substring(dot + 1)));
+		}
+	}
+
+	private static List<Object> initialize(EntityManager entityManager, List<Object> owners, String attributeName) {
+		if (owners.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Class<?> entityClass = Hibernate.getClass(owners.get(0));
+		EntityType<?> entityType = entityManager.getMetamodel().entity(entityClass);
+		// reads the attribute the way Hibernate does, through the field or the getter the entity maps
+		EntityPersister persister = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+				.getMappingMetamodel().getEntityDescriptor(entityClass);
+
+		// fetching owners that are already managed initializes their association in place
+		String hql = "select o from " + entityType.getName() + " o left join fetch o." + attributeName
+				+ " where o in :owners";
+		for (int from = 0; from < owners.size(); from += MAX_OWNERS_PER_QUERY) {
+			entityManager.createQuery(hql)
+					.setParameter("owners", owners.subList(from, Math.min(from + MAX_OWNERS_PER_QUERY, owners.size())))
+					.getResultList();
+		}
+
+		List<Object> values = new ArrayList<>();
+		for (Object owner : owners) {
+			Object value = persister.getPropertyValue(Hibernate.unproxy(owner), attributeName);
+			if (value instanceof Collection) {
+				values.addAll((Collection<?>) value);
+			}
+			else if (value != null) {
+				values.add(value);
+			}
+		}
+		return distinct(values);
+	}
+
+	private static List<Object> distinct(Collection<?> entities) {
+		// entities of one persistence context are unique by identity
+		Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<Object> result = new ArrayList<>();
+		for (Object entity : entities) {
+			if (seen.add(entity)) {
+				result.add(entity);
+			}
+		}
+		return result;
+	}
+
+	private static int depth(String path) {
+		return path.split("\\.").length;
+	}
+
+}
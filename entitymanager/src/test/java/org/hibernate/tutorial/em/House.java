@@ -80,6 +80,10 @@ public class House {
 		bulbs.add(bulb);
 	}
 
+	public void removeBulb(Bulb bulb) {
+		bulbs.remove(bulb);
+	}
+
 	public List<Window> getWindows() {
 		return Collections.unmodifiableList(windows);
 	}
@@ -0,0 +1,71 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderColumn;
+
+/**
+ * the rooms and bulbs of a {@link House}, mapped so that changing them touches only the affected rows.
+ * House maps them as bags, which have nothing to tell their rows apart, so a changed bag is deleted
+ * and re-inserted completely.
+ */
+@Entity
+public class IndexedHouse {
+
+	@Id
+	@GeneratedValue
+	private Long id;
+
+	// a separate list mapping table IndexedHouse_Room, like House.rooms
+	// the order column rooms_ORDER makes it an indexed list instead of a bag:
+	// appending inserts one row, but removing from the middle rewrites the index of every later row
+	@OneToMany
+	@OrderColumn
+	private List<Room> rooms = new ArrayList<>();
+
+	// a separate mapping table IndexedHouse_Bulb, like House.bulbs
+	// a set has no order to maintain, adding or removing any bulb touches its own row only
+	@OneToMany
+	private Set<Bulb> bulbs = new HashSet<>();
+
+	public IndexedHouse() {
+		// this form used by Hibernate
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public List<Room> getRooms() {
+		return Collections.unmodifiableList(rooms);
+	}
+
+	public void addRoom(Room room) {
+		rooms.add(room);
+	}
+
+	public Set<Bulb> getBulbs() {
+		return Collections.unmodifiableSet(bulbs);
+	}
+
+	public void addBulb(Bulb bulb) {
+		bulbs.add(bulb);
+	}
+
+	public void removeBulb(Bulb bulb) {
+		bulbs.remove(bulb);
+	}
+
+}
@@ -0,0 +1,428 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import junit.framework.TestCase;
+
+import static java.lang.System.out;
+import static java.time.LocalDateTime.now;
+
+import static jakarta.persistence.Persistence.createEntityManagerFactory;
+
+/**
+ * Compares the fetching and writing strategies illustrated in {@link JPAIllustrationTest}.
+ * The printed numbers are what matters, the assertions only check the strategies are equivalent.
+ * See {@link Benchmark} for how to run with larger data sets.
+ */
+public class JPABenchmarkTest extends TestCase {
+	private EntityManagerFactory entityManagerFactory;
+
+	@Override
+	protected void setUp() {
+		entityManagerFactory = SharedEntityManagerFactory.get(Map.of(
+				// printing every statement would dominate the measurements
+				"hibernate.show_sql", "false",
+				// not the database of the illustration tests, which share a factory, too
+				"jakarta.persistence.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"));
+		SharedEntityManagerFactory.reset(entityManagerFactory);
+	}
+
+	void inTransaction(Consumer<EntityManager> work) {
+		UnitOfWork.inTransaction(entityManagerFactory, work);
+	}
+
+	void inReadOnlyTransaction(Consumer<EntityManager> work) {
+		UnitOfWork.inReadOnlyTransaction(entityManagerFactory, work);
+	}
+
+	Statistics statistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	public void testHouseCollectionLoading() {
+		int houseCount = Benchmark.size("houses", 2);
+		int perCollection = Benchmark.size("house.collection", 50);
+
+		List<Long> houseIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			for(int i = 0; i < houseCount; i++) {
+				// House maps its collections as bags, which cannot be join fetched together
+				IndexedHouse house = new IndexedHouse();
+				entityManager.persist(house);
+				for(int j = 0; j < perCollection; j++) {
+					Room room = new Room();
+					entityManager.persist(room);
+					house.addRoom(room);
+					Bulb bulb = new Bulb();
+					entityManager.persist(bulb);
+					house.addBulb(bulb);
+				}
+				houseIds.add(house.getId());
+			}
+		});
+
+		out.println("---one query per collection");
+		Statistics statistics = statistics();
+		statistics.clear();
+		inTransaction(entityManager -> {
+			Benchmark.measure("house collections, query per collection", () -> {
+				List<IndexedHouse> houses = GraphInitializer.load(entityManager, IndexedHouse.class, houseIds, "rooms", "bulbs");
+				long rows = houses.size();
+				for(IndexedHouse house : houses) {
+					rows += house.getRooms().size() + house.getBulbs().size();
+				}
+				out.println("rows read: " + rows + ", statements: " + statistics.getPrepareStatementCount());
+			});
+		});
+
+		out.println("---one query joining all collections");
+		statistics.clear();
+		inTransaction(entityManager -> {
+			Benchmark.measure("house collections, cartesian join", () -> {
+				List<IndexedHouse> houses = entityManager.createQuery(
+						"select h from IndexedHouse h left join fetch h.rooms left join fetch h.bulbs"
+								+ " where h.id in (:ids)", IndexedHouse.class)
+						.setParameter("ids", houseIds)
+						.getResultList();
+				assertEquals(houseCount, houses.size());
+				for(IndexedHouse house : houses) {
+					assertEquals(perCollection, house.getRooms().size());
+					assertEquals(perCollection, house.getBulbs().size());
+				}
+			});
+			long statements = statistics.getPrepareStatementCount();
+			// the fetch join returns every house once, but JDBC reads a row for every combination of its
+			// rooms and bulbs. The same join without the fetch returns each of these rows.
+			long rows = entityManager.createQuery(
+					"select h.id, r.id, b.id from IndexedHouse h left join h.rooms r left join h.bulbs b"
+							+ " where h.id in (:ids)", Object[].class)
+					.setParameter("ids", houseIds)
+					.getResultList()
+					.size();
+			assertEquals((long) houseCount * perCollection * perCollection, rows);
+			out.println("rows read: " + rows + ", statements: " + statements);
+		});
+	}
+
+	public void testPostFeed() {
+		int postCount = Benchmark.size("posts", 2_000);
+		createPosts(postCount, Math.max(1, postCount / 100));
+
+		out.println("---entities, author loaded lazily");
+		List<String> fromEntities = new ArrayList<>();
+		Benchmark.measure("post feed, entities", () -> inTransaction(entityManager -> {
+			for (Post post : entityManager.createQuery("from Post p order by p.id", Post.class).getResultList()) {
+				fromEntities.add(post.getContent() + " " + post.getAuthor().getUsername());
+			}
+		}));
+
+		out.println("---record projection");
+		List<String> fromProjection = new ArrayList<>();
+		Benchmark.measure("post feed, projection", () -> inTransaction(entityManager -> {
+			for (PostFeedItem item : PostFeedItem.feed(entityManager)) {
+				fromProjection.add(item.content() + " " + item.authorUsername());
+			}
+		}));
+
+		assertEquals(fromEntities, fromProjection);
+	}
+
+	private void createPosts(int postCount, int userCount) {
+		inTransaction(entityManager -> {
+			List<User> users = new ArrayList<>();
+			for (int i = 0; i < userCount; i++) {
+				User user = new User();
+				user.setUsername("user" + i);
+				user.setEmail("user" + i + "@example.com");
+				entityManager.persist(user);
+				users.add(user);
+			}
+			entityManager.flush();
+			for (int i = 0; i < postCount; i++) {
+				Post post = new Post();
+				post.setAuthor(entityManager.getReference(User.class, users.get(i % userCount).getId()));
+				post.setContent("post #" + i);
+				entityManager.persist(post);
+				if (i % 1_000 == 0) {
+					// keep the persistence context small while seeding
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+		});
+	}
+
+	public void testReadOnlyTransaction() {
+		int eventCount = Benchmark.size("events", 100_000);
+		createEvents(eventCount);
+
+		// the heap retained while the loaded events are in the persistence context,
+		// a regular transaction also keeps a snapshot of their loaded state for dirty checking
+		out.println("---read in a regular transaction");
+		long regular = retainedByLoadedEvents("regular", eventCount, this::inTransaction);
+		out.println("---read in a read-only transaction");
+		long readOnly = retainedByLoadedEvents("read-only", eventCount, this::inReadOnlyTransaction);
+		out.printf("[benchmark] %d events retain %d KiB in a regular transaction, %d KiB in a read-only one%n",
+				eventCount, regular / 1024, readOnly / 1024);
+	}
+
+	private long retainedByLoadedEvents(String label, int eventCount, Consumer<Consumer<EntityManager>> transaction) {
+		long[] retained = new long[1];
+		transaction.accept(entityManager -> {
+			long before = Benchmark.usedHeapAfterGc();
+			List<Event> events = entityManager.createQuery("select e from Event e", Event.class).getResultList();
+			retained[0] = Benchmark.usedHeapAfterGc() - before;
+			assertEquals(eventCount, events.size());
+			// where the dirty checking happens
+			Benchmark.measure("flush after read, " + label, entityManager::flush);
+		});
+		return retained[0];
+	}
+
+	private void createEvents(int eventCount) {
+		inTransaction(entityManager -> {
+			for (int i = 0; i < eventCount; i++) {
+				entityManager.persist(new Event("event #" + i, now()));
+				if (i % 1_000 == 0) {
+					// keep the persistence context small while seeding
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+		});
+	}
+
+	public void testChunkingUnitOfWork() {
+		int eventCount = Benchmark.size("job.events", 20_000);
+		int slices = 5;
+
+		// a job that flushes regularly, but keeps everything in the persistence context
+		out.println("---unchunked job");
+		inTransaction(entityManager -> {
+			for (int slice = 0; slice < slices; slice++) {
+				int from = slice * eventCount / slices;
+				int to = (slice + 1) * eventCount / slices;
+				Benchmark.measure("unchunked, rows " + from + " to " + to, () -> {
+					for (int i = from; i < to; i++) {
+						entityManager.persist(new Event("event #" + i, now()));
+						if (i % 1_000 == 0) {
+							entityManager.flush();
+						}
+					}
+				});
+			}
+		});
+
+		out.println("---chunked job");
+		new ChunkingUnitOfWork(entityManagerFactory).chunkSize(1_000).commitPerChunk(true).run(chunked -> {
+			for (int slice = 0; slice < slices; slice++) {
+				int from = slice * eventCount / slices;
+				int to = (slice + 1) * eventCount / slices;
+				Benchmark.measure("chunked, rows " + from + " to " + to, () -> {
+					for (int i = from; i < to; i++) {
+						chunked.entityManager().persist(new Event("event #" + i, now()));
+						chunked.step();
+					}
+				});
+			}
+		});
+	}
+
+	public void testParallelSeeder() {
+		int eventCount = Benchmark.size("seed.events", 50_000);
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		for (int workers = 1; workers <= cores; workers *= 2) {
+			inTransaction(entityManager -> entityManager.createQuery("delete from Event").executeUpdate());
+			double rowsPerSecond = new ParallelSeeder(entityManagerFactory, workers)
+					.rowsPerTask(Math.max(1_000, eventCount / (workers * 4)))
+					.seed(eventCount, (entityManager, i) -> new Event("event #" + i, now()));
+			out.printf("[benchmark] seeding %d events with %2d workers: %10.0f rows/s%n", eventCount, workers, rowsPerSecond);
+		}
+	}
+
+	public void testPrefetchedSequence() {
+		int rows = Benchmark.size("generator.rows", 50_000);
+		int cores = Runtime.getRuntime().availableProcessors();
+		PrefetchingSequenceGenerator generator = (PrefetchingSequenceGenerator) entityManagerFactory
+				.unwrap(SessionFactoryImplementor.class).getMappingMetamodel()
+				.getEntityDescriptor(PrefetchedIdThing.class).getGenerator();
+
+		// more threads than cores, where threads waiting on the pooled optimizer's lock show the most
+		for (int workers = 1; workers <= cores * 2; workers *= 2) {
+			int threads = workers;
+			Map<String, Supplier<Object>> generators = new LinkedHashMap<>();
+			generators.put("sequence, pooled", SequenceIdThing::new);
+			generators.put("sequence, prefetched per thread", PrefetchedIdThing::new);
+			for (Map.Entry<String, Supplier<Object>> things : generators.entrySet()) {
+				long reservedByCallers = generator.blocksReservedByCallers();
+				double rowsPerSecond = new ParallelSeeder(entityManagerFactory, threads)
+						.rowsPerTask(Math.max(1_000, rows / (threads * 4)))
+						.seed(rows, (entityManager, i) -> things.getValue().get());
+				out.printf("[benchmark] inserting %d things with %2d threads, %-32s %10.0f rows/s%n",
+						rows, threads, things.getKey() + ":", rowsPerSecond);
+				if (things.getKey().contains("prefetched")) {
+					out.println("blocks the inserting threads had to reserve themselves: "
+							+ (generator.blocksReservedByCallers() - reservedByCallers));
+				}
+			}
+		}
+	}
+
+	public void testIdStrategies() {
+		// each strategy is seeded twice, into a file
+		int rows = Benchmark.size("ids.rows", 10_000);
+		int cores = Runtime.getRuntime().availableProcessors();
+		// H2 only reports the size of tables in files
+		String url = "jdbc:h2:file:" + Path.of("target", "h2-benchmark").toAbsolutePath() + "/ids;DB_CLOSE_DELAY=-1";
+
+		// the table names are the entity names
+		Map<String, Supplier<Object>> things = new LinkedHashMap<>();
+		things.put("IdentityIdThing", IdentityIdThing::new);
+		things.put("SequenceIdThing", SequenceIdThing::new);
+		things.put("AutoIdThing", AutoIdThing::new);
+		things.put("PrefetchedIdThing", PrefetchedIdThing::new);
+		things.put("UuidIdThing", UuidIdThing::new);
+
+		EntityManagerFactory factory = createEntityManagerFactory("org.hibernate.tutorial.jpa", Map.of(
+				"hibernate.show_sql", "false",
+				"jakarta.persistence.jdbc.url", url));
+		try {
+			for (int workers : new int[] { 1, cores }) {
+				for (Map.Entry<String, Supplier<Object>> thing : things.entrySet()) {
+					double rowsPerSecond = new ParallelSeeder(factory, workers)
+							.rowsPerTask(Math.max(1_000, rows / (workers * 4)))
+							.seed(rows, (entityManager, i) -> thing.getValue().get());
+					out.printf("[benchmark] inserting %d %-17s with %2d workers: %10.0f rows/s%n",
+							rows, thing.getKey(), workers, rowsPerSecond);
+				}
+			}
+
+			factory.unwrap(SessionFactory.class).inSession(session -> session.doWork(connection -> {
+				try (Statement statement = connection.createStatement()) {
+					// writes the pages of the tables, which are only counted once they are in the file
+					statement.execute("checkpoint sync");
+					for (String table : things.keySet()) {
+						try (ResultSet resultSet = statement.executeQuery("select disk_space_used('" + table + "')")) {
+							resultSet.next();
+							long bytes = resultSet.getLong(1);
+							out.printf("[benchmark] %-17s table and primary key index: %8d KB, %5.1f bytes per row%n",
+									table, bytes / 1024, bytes / (2d * rows));
+						}
+					}
+				}
+			}));
+		}
+		finally {
+			factory.close();
+		}
+	}
+
+	public void testPartitionedProcessing() {
+		int eventCount = Benchmark.size("partitioned.events", 50_000);
+		createEvents(eventCount);
+		int cores = Runtime.getRuntime().availableProcessors();
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+
+		for (int workers = 1; workers <= cores; workers *= 2) {
+			long[] checksum = new long[1];
+			PartitionedProcessor<Event> processor = new PartitionedProcessor<>(sessionFactory, Event.class, workers);
+			Benchmark.measure("process events with " + workers + " workers", () -> {
+				// stands for a derived value that takes some computation per event
+				checksum[0] = processor.process(0L, events -> events
+						.mapToLong(event -> event.getTitle().repeat(20).hashCode())
+						.sum(), Long::sum);
+			});
+			out.println("checksum " + checksum[0]);
+		}
+	}
+
+	public void testStorage() {
+		int eventCount = Benchmark.size("storage.events", 20_000);
+		String directory = Path.of("target", "h2-benchmark").toAbsolutePath().toString();
+
+		// the same storages as the h2-file and h2-mapped profiles
+		Map<String, String> urls = new LinkedHashMap<>();
+		urls.put("memory", "jdbc:h2:mem:storage;DB_CLOSE_DELAY=-1");
+		urls.put("file", "jdbc:h2:file:" + directory + "/file;DB_CLOSE_DELAY=-1");
+		urls.put("mapped file", "jdbc:h2:nioMapped:" + directory + "/mapped;DB_CLOSE_DELAY=-1");
+
+		for (Map.Entry<String, String> storage : urls.entrySet()) {
+			EntityManagerFactory factory = createEntityManagerFactory("org.hibernate.tutorial.jpa", Map.of(
+					"hibernate.show_sql", "false",
+					"jakarta.persistence.jdbc.url", storage.getValue()));
+			try {
+				Benchmark.measure("insert " + eventCount + " events, " + storage.getKey(), () ->
+						new ChunkingUnitOfWork(factory).chunkSize(1_000).commitPerChunk(true).run(chunked -> {
+							chunked.entityManager().unwrap(Session.class).setJdbcBatchSize(50);
+							for (int i = 0; i < eventCount; i++) {
+								chunked.entityManager().persist(new Event("event #" + i, now()));
+								chunked.step();
+							}
+						}));
+				long[] scanned = new long[1];
+				Benchmark.measure("scan " + eventCount + " events, " + storage.getKey(), () ->
+						scanned[0] = new PartitionedProcessor<>(factory.unwrap(SessionFactory.class), Event.class, 1)
+								.process(0L, Stream::count, Long::sum));
+				assertEquals(eventCount, scanned[0]);
+			}
+			finally {
+				factory.close();
+			}
+		}
+	}
+
+	public void testSlowQueryLogOverhead() {
+		int lookups = Benchmark.size("slowlog.lookups", 20_000);
+		createEvents(100);
+		List<Long> ids = new ArrayList<>();
+		inTransaction(entityManager -> ids.addAll(
+				entityManager.createQuery("select e.id from Event e", Long.class).getResultList()));
+
+		// none of the lookups is slow, so this is the price of the timing and bind capture alone
+		Map<String, String> providers = new LinkedHashMap<>();
+		providers.put("plain connections", DriverManagerConnectionProviderImpl.class.getName());
+		providers.put("slow query log", SlowQueryLog.class.getName());
+		for (Map.Entry<String, String> provider : providers.entrySet()) {
+			EntityManagerFactory factory = createEntityManagerFactory("org.hibernate.tutorial.jpa", Map.of(
+					"hibernate.show_sql", "false",
+					"hibernate.connection.provider_class", provider.getValue(),
+					"jakarta.persistence.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+					"jakarta.persistence.schema-generation.database.action", "none"));
+			try {
+				Benchmark.measure(lookups + " lookups, " + provider.getKey(), () -> UnitOfWork.inTransaction(factory, entityManager -> {
+					for (int i = 0; i < lookups; i++) {
+						entityManager.createQuery("select e from Event e where e.id = :id", Event.class)
+								.setParameter("id", ids.get(i % ids.size()))
+								.getSingleResult();
+					}
+				}));
+			}
+			finally {
+				factory.close();
+			}
+		}
+	}
+
+}
@@ -4,27 +4,36 @@
  */
 package org.hibernate.tutorial.em;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.hibernate.LazyInitializationException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.TransientObjectException;
+import org.hibernate.loader.MultipleBagFetchException;
+import org.hibernate.stat.Statistics;
 
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.RollbackException;
 import junit.framework.TestCase;
 
 import static java.lang.System.out;
 import static java.time.LocalDateTime.now;
 
-import static jakarta.persistence.Persistence.createEntityManagerFactory;
-
 
 /**
  * Illustrates basic use of Hibernate as a Jakarta Persistence provider.
@@ -37,15 +46,10 @@ public class JPAIllustrationTest extends TestCase {
 
 	@Override
 	protected void setUp() {
-		// an EntityManagerFactory is set up once for an application
-		// IMPORTANT: notice how the name here matches the name we
-		// gave the persistence-unit in persistence.xml
-		entityManagerFactory = createEntityManagerFactory("org.hibernate.tutorial.jpa");
-	}
-
-	@Override
-	protected void tearDown() {
-		entityManagerFactory.close();
+		// an EntityManagerFactory is set up once for an application,
+		// so the tests share one and start from empty tables
+		entityManagerFactory = SharedEntityManagerFactory.get();
+		SharedEntityManagerFactory.reset(entityManagerFactory);
 	}
 
 	public void testBasicUsage() {
@@ -63,22 +67,16 @@ public class JPAIllustrationTest extends TestCase {
 	}
 
 	void inTransaction(Consumer<EntityManager> work) {
-		EntityManager entityManager = entityManagerFactory.createEntityManager();
-		EntityTransaction transaction = entityManager.getTransaction();
-		try {
-			transaction.begin();
-			work.accept(entityManager);
-			transaction.commit();
-		}
-		catch (Exception e) {
-			if (transaction.isActive()) {
-				transaction.rollback();
-			}
-			throw e;
-		}
-		finally {
-			entityManager.close();
-		}
+		UnitOfWork.inTransaction(entityManagerFactory, work);
+	}
+
+	void inReadOnlyTransaction(Consumer<EntityManager> work) {
+		UnitOfWork.inReadOnlyTransaction(entityManagerFactory, work);
+	}
+
+	Statistics statistics() {
+		// statistics are enabled in persistence.xml
+		return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
 	}
 
 	public void testGenerationStrategies() {		
@@ -95,6 +93,13 @@ public class JPAIllustrationTest extends TestCase {
 			entityManager.persist(new AutoIdThing());
 			entityManager.persist(new AutoIdThing());
 			entityManager.persist(new AutoIdThing());
+
+			// generated by persist itself, no statement has been executed for it
+			UuidIdThing uuidIdThing = new UuidIdThing();
+			entityManager.persist(uuidIdThing);
+			assertEquals(7, uuidIdThing.getId().version());
+			entityManager.persist(new UuidIdThing());
+			entityManager.persist(new UuidIdThing());
 		});
 
 		inTransaction(entityManager -> {
@@ -106,11 +111,39 @@ public class JPAIllustrationTest extends TestCase {
 
 			entityManager.createQuery("select a from AutoIdThing a", AutoIdThing.class).getResultList()
 			.forEach(thing -> out.println("AutoIdThing (" + thing.getId() + ")"));
+
+			entityManager.createQuery("select u from UuidIdThing u", UuidIdThing.class).getResultList()
+			.forEach(thing -> out.println("UuidIdThing (" + thing.getId() + ")"));
 		});
 		
 	}
 	
 
+	public void testPrefetchedSequence() {
+		// several threads persisting at the same time, each takes its ids from its own block
+		int rows = 2_000;
+		new ParallelSeeder(entityManagerFactory, 4)
+				.rowsPerTask(250)
+				.seed(rows, (entityManager, i) -> new PrefetchedIdThing());
+
+		inTransaction(entityManager -> {
+			List<Long> ids = entityManager.createQuery("select p.id from PrefetchedIdThing p", Long.class).getResultList();
+			assertEquals(rows, ids.size());
+			assertEquals(rows, ids.stream().distinct().count());
+		});
+
+		// a thread's ids ascend, though other threads' ids lie in between
+		List<Long> ids = new ArrayList<>();
+		inTransaction(entityManager -> {
+			for (int i = 0; i < 3; i++) {
+				PrefetchedIdThing thing = new PrefetchedIdThing();
+				entityManager.persist(thing);
+				ids.add(thing.getId());
+			}
+		});
+		assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+	}
+
 	public void testEnumeratedType() {		
 		
 		inTransaction(entityManager -> {
@@ -416,4 +449,503 @@ public class JPAIllustrationTest extends TestCase {
 				
 	}
 
+	public void testFetchPlans() {
+
+		out.println("---Create units");
+		List<Long> unitIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			for(int i = 0; i < 3; i++) {
+				OrganizationalUnit orgUnit = new OrganizationalUnit();
+				orgUnit.addHouse(createHouseWithPlants());
+				orgUnit.addHouse(createHouseWithPlants());
+				orgUnit.addThing(new IdentityIdThing());
+				orgUnit.addThing(new IdentityIdThing());
+				entityManager.persist(orgUnit);
+				unitIds.add(orgUnit.getId());
+			}
+			createUserWithPosts(entityManager);
+			createUserWithPosts(entityManager);
+		});
+
+		Statistics statistics = statistics();
+
+		out.println("---unit-summary, neither houses nor things are loaded");
+		statistics.clear();
+		List<OrganizationalUnit> summaries = new ArrayList<>();
+		inTransaction(entityManager -> {
+			summaries.addAll(FetchPlans.apply(entityManager,
+					entityManager.createQuery("select u from OrganizationalUnit u", OrganizationalUnit.class),
+					OrganizationalUnit.SUMMARY_PLAN).getResultList());
+		});
+		assertEquals(3, summaries.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertFalse(entityManagerFactory.getPersistenceUnitUtil().isLoaded(summaries.get(0), "things"));
+		assertFalse(entityManagerFactory.getPersistenceUnitUtil().isLoaded(summaries.get(0), "houses"));
+
+		out.println("---unit-with-houses, houses are usable after the transaction");
+		statistics.clear();
+		List<OrganizationalUnit> withHouses = new ArrayList<>();
+		inTransaction(entityManager -> {
+			withHouses.addAll(FetchPlans.apply(entityManager,
+					entityManager.createQuery("select u from OrganizationalUnit u", OrganizationalUnit.class),
+					OrganizationalUnit.WITH_HOUSES_PLAN).getResultList());
+		});
+		assertEquals(3, withHouses.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		for(OrganizationalUnit unit : withHouses) {
+			// no LazyInitializationException, the graph fetched the houses
+			assertEquals(2, unit.getHouses().size());
+		}
+
+		out.println("---unit-with-houses on find");
+		statistics.clear();
+		List<OrganizationalUnit> found = new ArrayList<>();
+		inTransaction(entityManager -> {
+			found.add(FetchPlans.find(entityManager, OrganizationalUnit.class, unitIds.get(0),
+					OrganizationalUnit.WITH_HOUSES_PLAN));
+		});
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(2, found.get(0).getHouses().size());
+
+		out.println("---user-with-posts");
+		statistics.clear();
+		List<User> users = new ArrayList<>();
+		inTransaction(entityManager -> {
+			users.addAll(FetchPlans.apply(entityManager,
+					entityManager.createQuery("select u from User u", User.class),
+					User.WITH_POSTS_PLAN).getResultList());
+		});
+		assertEquals(2, users.size());
+		assertEquals(1, statistics.getPrepareStatementCount());
+		for(User user : users) {
+			assertEquals(2, user.getPosts().size());
+		}
+	}
+
+	public void testGraphInitializer() {
+
+		out.println("---Create units with houses, rooms and bulbs");
+		inTransaction(entityManager -> {
+			for(int i = 0; i < 3; i++) {
+				OrganizationalUnit orgUnit = new OrganizationalUnit();
+				for(int j = 0; j < 2; j++) {
+					orgUnit.addHouse(createFurnishedHouse(entityManager, 3, 2));
+				}
+				entityManager.persist(orgUnit);
+			}
+		});
+
+		Statistics statistics = statistics();
+		List<OrganizationalUnit> units = new ArrayList<>();
+		inTransaction(entityManager -> {
+			units.addAll(entityManager.createQuery("select u from OrganizationalUnit u", OrganizationalUnit.class).getResultList());
+
+			out.println("---initialize houses, rooms and bulbs of all units");
+			statistics.clear();
+			GraphInitializer.initialize(entityManager, units, "houses", "houses.rooms", "houses.bulbs");
+			// one query per association path, no matter how many units and houses there are
+			assertEquals(3, statistics.getPrepareStatementCount());
+		});
+
+		// the units are detached now, but everything on the paths was initialized
+		for(OrganizationalUnit unit : units) {
+			assertEquals(2, unit.getHouses().size());
+			for(House house : unit.getHouses()) {
+				assertEquals(3, house.getRooms().size());
+				assertEquals(2, house.getBulbs().size());
+			}
+		}
+		try {
+			units.get(0).getHouses().get(0).getWindows().size();
+			fail();
+		} catch (LazyInitializationException lie) {
+			// windows were not on any path
+		}
+	}
+
+	private House createFurnishedHouse(EntityManager entityManager, int rooms, int bulbs) {
+		// rooms and bulbs are not cascaded from the house
+		House house = createHouseWithPlants();
+		for(int i = 0; i < rooms; i++) {
+			Room room = new Room();
+			entityManager.persist(room);
+			house.addRoom(room);
+		}
+		for(int i = 0; i < bulbs; i++) {
+			Bulb bulb = new Bulb();
+			entityManager.persist(bulb);
+			house.addBulb(bulb);
+		}
+		return house;
+	}
+
+	public void testMultiCollectionLoading() {
+
+		out.println("---Create houses with rooms, bulbs, windows and persons");
+		List<Long> houseIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			for(int i = 0; i < 3; i++) {
+				House house = createFurnishedHouse(entityManager, 4, 3);
+				entityManager.persist(house);
+				for(int j = 0; j < 2; j++) {
+					Window window = new Window();
+					window.setHouse(house);
+					house.addWindow(window);
+					entityManager.persist(window);
+				}
+				Person person = new Person();
+				entityManager.persist(person);
+				house.addPlant(person);
+				houseIds.add(house.getId());
+			}
+		});
+
+		out.println("---join fetching two bags fails");
+		try {
+			inTransaction(entityManager -> {
+				entityManager.createQuery("select h from House h left join fetch h.rooms left join fetch h.bulbs", House.class)
+						.getResultList();
+			});
+			fail();
+		} catch (RuntimeException e) {
+			Throwable cause = e;
+			while (cause != null && !(cause instanceof MultipleBagFetchException)) {
+				cause = cause.getCause();
+			}
+			assertNotNull(cause);
+		}
+
+		out.println("---one query for the houses, one per collection");
+		Statistics statistics = statistics();
+		statistics.clear();
+		List<House> houses = new ArrayList<>();
+		inTransaction(entityManager -> {
+			houses.addAll(GraphInitializer.load(entityManager, House.class, houseIds, "rooms", "bulbs", "windows", "persons"));
+		});
+		assertEquals(5, statistics.getPrepareStatementCount());
+		assertEquals(3, houses.size());
+		for(House house : houses) {
+			// plants are a basic array column of House, they come with the house itself
+			assertEquals(Plant.values().length, house.getPlants().size());
+			assertEquals(4, house.getRooms().size());
+			assertEquals(3, house.getBulbs().size());
+			assertEquals(2, house.getWindows().size());
+			assertEquals(1, house.getPersons().size());
+		}
+	}
+
+	public void testCollectionUpdates() {
+
+		int size = 10;
+		List<Long> houseIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			House house = createFurnishedHouse(entityManager, size, size);
+			entityManager.persist(house);
+			houseIds.add(house.getId());
+			IndexedHouse indexedHouse = new IndexedHouse();
+			for(int i = 0; i < size; i++) {
+				Room room = new Room();
+				entityManager.persist(room);
+				indexedHouse.addRoom(room);
+				Bulb bulb = new Bulb();
+				entityManager.persist(bulb);
+				indexedHouse.addBulb(bulb);
+			}
+			entityManager.persist(indexedHouse);
+			houseIds.add(indexedHouse.getId());
+		});
+
+		Statistics statistics = statistics();
+
+		out.println("---append a room to a bag");
+		inTransaction(entityManager -> {
+			House house = entityManager.find(House.class, houseIds.get(0));
+			Room room = new Room();
+			entityManager.persist(room);
+			house.addRoom(room);
+			statistics.clear();
+			entityManager.flush();
+			// insert the room, delete the house's rows from House_Room and insert all of them again
+			assertEquals(1 + 1 + (size + 1), statistics.getPrepareStatementCount());
+		});
+
+		out.println("---append a room to an indexed list");
+		inTransaction(entityManager -> {
+			IndexedHouse house = entityManager.find(IndexedHouse.class, houseIds.get(1));
+			Room room = new Room();
+			entityManager.persist(room);
+			house.addRoom(room);
+			statistics.clear();
+			entityManager.flush();
+			// insert the room and one row into IndexedHouse_Room, the other rows are untouched
+			assertEquals(2, statistics.getPrepareStatementCount());
+		});
+
+		out.println("---remove a bulb from a bag");
+		inTransaction(entityManager -> {
+			House house = entityManager.find(House.class, houseIds.get(0));
+			house.removeBulb(house.getBulbs().get(0));
+			statistics.clear();
+			entityManager.flush();
+			// delete the house's rows from House_Bulb and insert the remaining ones again
+			assertEquals(1 + (size - 1), statistics.getPrepareStatementCount());
+		});
+
+		out.println("---remove a bulb from a set");
+		inTransaction(entityManager -> {
+			IndexedHouse house = entityManager.find(IndexedHouse.class, houseIds.get(1));
+			house.removeBulb(house.getBulbs().iterator().next());
+			statistics.clear();
+			entityManager.flush();
+			// delete one row from IndexedHouse_Bulb, wherever the bulb was
+			assertEquals(1, statistics.getPrepareStatementCount());
+		});
+
+		inTransaction(entityManager -> {
+			House house = entityManager.find(House.class, houseIds.get(0));
+			assertEquals(size + 1, house.getRooms().size());
+			assertEquals(size - 1, house.getBulbs().size());
+			IndexedHouse indexedHouse = entityManager.find(IndexedHouse.class, houseIds.get(1));
+			assertEquals(size + 1, indexedHouse.getRooms().size());
+			assertEquals(size - 1, indexedHouse.getBulbs().size());
+		});
+	}
+
+	public void testPostFeedProjection() {
+
+		inTransaction(entityManager -> {
+			createUserWithPosts(entityManager);
+			createUserWithPosts(entityManager);
+			createUserWithPosts(entityManager);
+		});
+
+		out.println("---Query the feed");
+		Statistics statistics = statistics();
+		statistics.clear();
+		inTransaction(entityManager -> {
+			List<PostFeedItem> feed = PostFeedItem.feed(entityManager);
+			assertEquals(6, feed.size());
+			for (PostFeedItem item : feed) {
+				out.println("Post: " + item.content() + " user: " + item.authorUsername());
+				assertTrue(item.authorUsername().startsWith("testuser"));
+			}
+		});
+		// one statement, and no entity was loaded into the persistence context
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+
+		out.println("---Query a page of the feed");
+		inTransaction(entityManager -> {
+			List<PostFeedItem> feed = PostFeedItem.feed(entityManager);
+			// in the order of the whole feed
+			assertEquals(feed.subList(2, 5), PostFeedItem.feed(entityManager, 2, 3));
+			assertEquals(feed.subList(4, 6), PostFeedItem.feed(entityManager, 4, 3));
+		});
+	}
+
+	public void testReadOnlyTransaction() {
+
+		inTransaction(entityManager -> {
+			entityManager.persist(new Event("Our very first event!", now()));
+		});
+
+		Statistics statistics = statistics();
+		statistics.clear();
+		inReadOnlyTransaction(entityManager -> {
+			Event event = entityManager.createQuery("select e from Event e", Event.class).getSingleResult();
+			assertTrue(entityManager.unwrap(Session.class).isReadOnly(event));
+			// this change is neither dirty checked nor flushed
+			event.setTitle("A changed title");
+		});
+		assertEquals(0, statistics.getFlushCount());
+		assertEquals(0, statistics.getEntityUpdateCount());
+
+		inTransaction(entityManager -> {
+			Event event = entityManager.createQuery("select e from Event e", Event.class).getSingleResult();
+			assertEquals("Our very first event!", event.getTitle());
+		});
+	}
+
+	public void testChunkingUnitOfWork() {
+
+		out.println("---Persist events in chunks of 10");
+		List<Integer> chunks = new ArrayList<>();
+		new ChunkingUnitOfWork(entityManagerFactory).chunkSize(10).commitPerChunk(true).run(chunked -> {
+			for (int i = 0; i < 25; i++) {
+				chunked.entityManager().persist(new Event("event #" + i, now()));
+				chunked.step();
+				assertTrue(chunked.managedEntityCount() < 10);
+			}
+			chunks.add(chunked.completedChunks());
+		});
+		assertEquals(2, chunks.get(0).intValue());
+
+		inTransaction(entityManager -> {
+			assertEquals(25L, entityManager.createQuery("select count(e) from Event e", Long.class).getSingleResult().longValue());
+		});
+	}
+
+	public void testParallelSeeder() {
+
+		out.println("---Seed users, then their posts, on 4 threads");
+		ParallelSeeder seeder = new ParallelSeeder(entityManagerFactory, 4).rowsPerTask(25);
+		seeder.seed(20, (entityManager, i) -> {
+			User user = new User();
+			user.setUsername("user" + i);
+			user.setEmail("user" + i + "@example.com");
+			return user;
+		});
+
+		List<Long> userIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			userIds.addAll(entityManager.createQuery("select u.id from User u", Long.class).getResultList());
+		});
+		assertEquals(20, userIds.size());
+
+		seeder.seed(100, (entityManager, i) -> {
+			Post post = new Post();
+			post.setAuthor(entityManager.getReference(User.class, userIds.get(i % userIds.size())));
+			post.setContent("post #" + i);
+			return post;
+		});
+
+		inTransaction(entityManager -> {
+			assertEquals(100L, entityManager.createQuery("select count(p) from Post p", Long.class).getSingleResult().longValue());
+			assertEquals(5L, entityManager.createQuery("select count(p) from Post p where p.author.username = 'user0'", Long.class)
+					.getSingleResult().longValue());
+		});
+	}
+
+	public void testPartitionedProcessing() {
+
+		inTransaction(entityManager -> {
+			for (int i = 0; i < 100; i++) {
+				entityManager.persist(new Event(i % 2 == 0 ? "even event" : "odd event", now()));
+			}
+		});
+
+		out.println("---Count the even events in 8 partitions on 3 threads");
+		long evenEvents = new PartitionedProcessor<>(entityManagerFactory.unwrap(SessionFactory.class), Event.class, 3)
+				.partitions(8)
+				.maxPendingPartitions(2)
+				.process(0L, events -> events.filter(event -> event.getTitle().startsWith("even")).count(), Long::sum);
+		assertEquals(50, evenEvents);
+	}
+
+	public void testQueryPlans() {
+
+		out.println("---Create enough rows for table scans to matter");
+		List<Long> houseIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			for (int i = 0; i < 20; i++) {
+				createUserWithPosts(entityManager);
+			}
+			for (Post post : entityManager.createQuery("from Post p", Post.class).getResultList()) {
+				PostComment comment = new PostComment();
+				comment.setReview("a comment");
+				comment.setPost(post);
+				entityManager.persist(comment);
+			}
+			for (int i = 0; i < 20; i++) {
+				House house = new House();
+				entityManager.persist(house);
+				Window window = new Window();
+				window.setHouse(house);
+				house.addWindow(window);
+				entityManager.persist(window);
+				Person person = new Person();
+				entityManager.persist(person);
+				house.addPlant(person);
+				houseIds.add(house.getId());
+			}
+		});
+
+		out.println("---Run the filtered tutorial queries");
+		List<Long> userIds = new ArrayList<>();
+		inTransaction(entityManager -> {
+			userIds.add(entityManager.createQuery("select u.id from User u", Long.class).setMaxResults(1).getSingleResult());
+		});
+		QueryPlanChecker.startCapturing();
+		inTransaction(entityManager -> {
+			User user = entityManager.find(User.class, userIds.get(0));
+			Post post = user.getPosts().get(0);
+			entityManager.createQuery("select pc from PostComment pc where pc.post = :post", PostComment.class)
+					.setParameter("post", post)
+					.getResultList();
+			House house = entityManager.find(House.class, houseIds.get(0));
+			house.getWindows().size();
+			house.getPersons().size();
+		});
+		// H2 indexes foreign key columns by itself, the mapped indexes make this independent of the database
+		assertEquals(List.of(), QueryPlanChecker.fullScans(entityManagerFactory, 20));
+
+		out.println("---Filter on a column without an index");
+		QueryPlanChecker.startCapturing();
+		inTransaction(entityManager -> {
+			entityManager.createQuery("select p from Post p where p.content = :content", Post.class)
+					.setParameter("content", "no such post")
+					.getResultList();
+		});
+		List<String> fullScans = QueryPlanChecker.fullScans(entityManagerFactory, 20);
+		assertEquals(1, fullScans.size());
+		assertTrue(fullScans.get(0), fullScans.get(0).contains(".POST.tableScan"));
+	}
+
+	public void testSlowQueryLog() throws IOException {
+		// with a threshold of 0 every statement counts as slow
+		EntityManagerFactory factory = SharedEntityManagerFactory.get(Map.of(
+				"hibernate.connection.provider_class", SlowQueryLog.class.getName(),
+				SlowQueryLog.THRESHOLD, "0",
+				SlowQueryLog.FILE, "target/slow-query-test-%g.log",
+				// prefixes the SQL with the query or entity it was generated for, which the log shows as origin
+				"hibernate.use_sql_comments", "true",
+				"hibernate.jdbc.batch_size", "10",
+				"jakarta.persistence.jdbc.url", "jdbc:h2:mem:slowquerylog;DB_CLOSE_DELAY=-1"));
+		SharedEntityManagerFactory.reset(factory);
+		String title = "slow event " + UUID.randomUUID();
+
+		// one batch of three inserts, the events have no date
+		UnitOfWork.inTransaction(factory, entityManager -> {
+			for (int i = 0; i < 3; i++) {
+				entityManager.persist(new Event(title + " " + i, null));
+			}
+		});
+		UnitOfWork.inTransaction(factory, entityManager -> {
+			entityManager.createQuery("select e from Event e where e.title = :title", Event.class)
+					.setParameter("title", title + " 0")
+					.getResultList();
+		});
+		// the JDBC calls Hibernate does not make itself
+		UnitOfWork.inTransaction(factory, entityManager -> entityManager.unwrap(Session.class).doWork(connection -> {
+			try (Statement statement = connection.createStatement()) {
+				assertTrue(statement.execute("select title from Events where title like '" + title + "%'"));
+				try (ResultSet resultSet = statement.getResultSet()) {
+					while (resultSet.next()) {
+						resultSet.getString(1);
+					}
+				}
+			}
+			try (PreparedStatement update = connection.prepareStatement("update Events set title = ? where title <> ?")) {
+				update.setString(1, title + " updated");
+				update.setString(2, title + " 0");
+				assertEquals(2, update.executeLargeUpdate());
+			}
+		}));
+
+		// the log is appended to across runs, the random title picks the lines of this run
+		List<String> lines = Files.readAllLines(Path.of("target", "slow-query-test-0.log")).stream()
+				.filter(line -> line.contains(title))
+				.collect(Collectors.toList());
+		out.println(lines);
+		// one line for the batch, with the binds of its first row. setNull binds null, not the SQL type of the date column
+		assertTrue(lines.stream().anyMatch(line -> line.contains("3 rows)") && line.contains("origin [insert")
+				&& line.contains("Event]") && line.contains("=null") && line.contains(title + " 0")
+				&& line.contains("of the first of 3 rows")));
+		assertFalse(lines.stream().anyMatch(line -> line.contains(title + " 2") && line.contains("origin [insert")));
+		assertTrue(lines.stream().anyMatch(line -> line.contains("1 rows")
+				&& line.contains("origin [select e from Event e where e.title = :title]")));
+		assertTrue(lines.stream().anyMatch(line -> line.contains("3 rows") && line.contains("sql [select title from Events")));
+		assertTrue(lines.stream().anyMatch(line -> line.contains("2 rows") && line.contains("sql [update Events")));
+	}
+
 }
@@ -9,13 +9,30 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.OneToMany;
 
 /**
  * showcases eager and lazy fetching. Persist operations are cascaded
+ * <p>
+ * The named entity graphs are fetch plans a caller can pick per query or find,
+ * overriding the static EAGER/LAZY settings below, see {@link FetchPlans}
  */
 @Entity
+@NamedEntityGraph(name = OrganizationalUnit.SUMMARY_PLAN)
+@NamedEntityGraph(name = OrganizationalUnit.WITH_HOUSES_PLAN, attributeNodes = @NamedAttributeNode("houses"))
+@NamedEntityGraph(name = OrganizationalUnit.WITH_THINGS_PLAN, attributeNodes = @NamedAttributeNode("things"))
 public class OrganizationalUnit {
+
+	// only the unit itself, neither houses nor the otherwise eager things
+	public static final String SUMMARY_PLAN = "unit-summary";
+
+	// the unit and its houses, the things stay unloaded
+	public static final String WITH_HOUSES_PLAN = "unit-with-houses";
+
+	// the unit and its things, which is what the static mapping does
+	public static final String WITH_THINGS_PLAN = "unit-with-things";
 	
 	@Id
 	@GeneratedValue
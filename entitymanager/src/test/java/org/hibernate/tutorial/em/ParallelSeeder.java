@@ -0,0 +1,104 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+
+import org.hibernate.Session;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * fills the database with generated rows on several threads. The rows are split on a fork join pool,
+ * every leaf task persists its range in its own session, so on its own connection and in its own
+ * transaction, sending the inserts in JDBC batches. Ids come in blocks from the pooled optimizer
+ * of the entities' sequences, so the workers do not wait for the database to hand out ids.
+ * <pre>
+ * new ParallelSeeder(entityManagerFactory, 8).seed(1_000_000, (entityManager, i) -> new Event("event #" + i, now()));
+ * </pre>
+ */
+final class ParallelSeeder {
+
+	private final EntityManagerFactory entityManagerFactory;
+	private final int parallelism;
+	private int batchSize = 50;
+	private int rowsPerTask = 10_000;
+
+	ParallelSeeder(EntityManagerFactory entityManagerFactory, int parallelism) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * number of inserts sent to the database in one JDBC batch
+	 */
+	ParallelSeeder batchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * ranges up to this size are persisted in one transaction, larger ones are split
+	 */
+	ParallelSeeder rowsPerTask(int rowsPerTask) {
+		this.rowsPerTask = rowsPerTask;
+		return this;
+	}
+
+	/**
+	 * persists the entities created by the row factory for the indexes 0 to rows - 1
+	 *
+	 * @return the rows per second
+	 */
+	double seed(int rows, BiFunction<EntityManager, Integer, ?> rowFactory) {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			long start = System.nanoTime();
+			long seeded = pool.invoke(new SeedTask(rowFactory, 0, rows));
+			return seeded * 1_000_000_000d / (System.nanoTime() - start);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private final class SeedTask extends RecursiveTask<Long> {
+		private final BiFunction<EntityManager, Integer, ?> rowFactory;
+		private final int from;
+		private final int to;
+
+		private SeedTask(BiFunction<EntityManager, Integer, ?> rowFactory, int from, int to) {
+			this.rowFactory = rowFactory;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (to - from > rowsPerTask) {
+				int middle = (from + to) >>> 1;
+				SeedTask lower = new SeedTask(rowFactory, from, middle);
+				lower.fork();
+				long upper = new SeedTask(rowFactory, middle, to).compute();
+				return upper + lower.join();
+			}
+			UnitOfWork.inTransaction(entityManagerFactory, entityManager -> {
+				entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+				for (int i = from; i < to; i++) {
+					entityManager.persist(rowFactory.apply(entityManager, i));
+					if ((i - from + 1) % batchSize == 0) {
+						entityManager.flush();
+						entityManager.clear();
+					}
+				}
+			});
+			return (long) (to - from);
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+/**
+ * processes all rows of an entity on several threads. The id range of the table is split into
+ * partitions, every partition is streamed by its own stateless session on a read-only connection,
+ * so nothing is cached or dirty checked, and the results of the partitions are merged:
+ * <pre>
+ * long count = new PartitionedProcessor&lt;&gt;(sessionFactory, Event.class, 4)
+ *         .process(0L, events -&gt; events.count(), Long::sum);
+ * </pre>
+ * At most {@link #maxPendingPartitions(int)} partitions are submitted to the workers but not yet merged,
+ * so slow merging holds back the reading instead of piling up results in memory.
+ */
+final class PartitionedProcessor<T> {
+
+	private final SessionFactory sessionFactory;
+	private final Class<T> entityClass;
+	private final int parallelism;
+	private int partitions;
+	private int maxPendingPartitions;
+	private int fetchSize = 1_000;
+
+	PartitionedProcessor(SessionFactory sessionFactory, Class<T> entityClass, int parallelism) {
+		this.sessionFactory = sessionFactory;
+		this.entityClass = entityClass;
+		this.parallelism = parallelism;
+		this.partitions = parallelism * 4;
+		this.maxPendingPartitions = parallelism * 2;
+	}
+
+	/**
+	 * number of id ranges the table is split into, by default four per worker
+	 */
+	PartitionedProcessor<T> partitions(int partitions) {
+		this.partitions = partitions;
+		return this;
+	}
+
+	/**
+	 * number of partitions being read or waiting to be merged, by default two per worker
+	 */
+	PartitionedProcessor<T> maxPendingPartitions(int maxPendingPartitions) {
+		this.maxPendingPartitions = maxPendingPartitions;
+		return this;
+	}
+
+	PartitionedProcessor<T> fetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+		return this;
+	}
+
+	<R> R process(R identity, Function<Stream<T>, R> partitionWork, BinaryOperator<R> merge) {
+		String entityName = sessionFactory.getMetamodel().entity(entityClass).getName();
+		Object[] bounds = sessionFactory.fromStatelessTransaction(session -> session
+				.createSelectionQuery("select min(id(e)), max(id(e)) from " + entityName + " e", Object[].class)
+				.getSingleResult());
+		if (bounds[0] == null) {
+			return identity;
+		}
+		long min = ((Number) bounds[0]).longValue();
+		long max = ((Number) bounds[1]).longValue();
+		long partitionSize = Math.max(1, (max - min + partitions) / partitions);
+		String hql = "from " + entityName + " e where id(e) between :from and :to";
+
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+		Semaphore pending = new Semaphore(maxPendingPartitions);
+		try {
+			R result = identity;
+			int submitted = 0;
+			int merged = 0;
+			for (long start = min; start <= max; start += partitionSize) {
+				long from = start;
+				long to = Math.min(max, start + partitionSize - 1);
+				// wait for a free slot, merging what is already done
+				while (!pending.tryAcquire()) {
+					result = merge.apply(result, completion.take().get());
+					merged++;
+					pending.release();
+				}
+				completion.submit(() -> readPartition(hql, from, to, partitionWork));
+				submitted++;
+			}
+			for (; merged < submitted; merged++) {
+				result = merge.apply(result, completion.take().get());
+				pending.release();
+			}
+			return result;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while processing " + entityName, e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Processing a partition of " + entityName + " failed", e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private <R> R readPartition(String hql, long from, long to, Function<Stream<T>, R> partitionWork) {
+		try (StatelessSession session = sessionFactory.openStatelessSession()) {
+			return UnitOfWork.inReadOnlyTransaction(session, () -> {
+				try (Stream<T> rows = session.createSelectionQuery(hql, entityClass)
+						.setParameter("from", from)
+						.setParameter("to", to)
+						.setFetchSize(fetchSize)
+						.getResultStream()) {
+					return partitionWork.apply(rows);
+				}
+			});
+		}
+	}
+
+}
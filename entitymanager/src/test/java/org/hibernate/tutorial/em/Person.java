@@ -3,8 +3,12 @@ package org.hibernate.tutorial.em;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 
 @Entity
+// the join column of House.persons, which is loaded by owninghouse_id
+@Table(indexes = @Index(name = "idx_person_owninghouse", columnList = "owninghouse_id"))
 public class Person {
 
 	@Id
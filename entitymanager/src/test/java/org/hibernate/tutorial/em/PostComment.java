@@ -3,11 +3,12 @@ package org.hibernate.tutorial.em;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 
 @Entity(name = "PostComment")
-@Table(name = "post_comment")
+@Table(name = "post_comment", indexes = @Index(name = "idx_post_comment_post", columnList = "post_id")) // comments are queried by post
 public class PostComment {
  
     @Id
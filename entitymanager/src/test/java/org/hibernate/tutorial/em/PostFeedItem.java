@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * read model of a post for the feed. Instances are created by a select new projection,
+ * so they are not managed: no snapshot is kept and nothing is dirty checked on flush,
+ * and the author's username comes with the same statement instead of a lazy load per author.
+ */
+public record PostFeedItem(Long id, String content, String authorUsername) {
+
+	static final String FEED_QUERY = "select new org.hibernate.tutorial.em.PostFeedItem(p.id, p.content, a.username)"
+			+ " from Post p left join p.author a order by p.id";
+
+	public static List<PostFeedItem> feed(EntityManager entityManager) {
+		return entityManager.createQuery(FEED_QUERY, PostFeedItem.class).getResultList();
+	}
+
+	public static List<PostFeedItem> feed(EntityManager entityManager, int firstResult, int maxResults) {
+		return entityManager.createQuery(FEED_QUERY, PostFeedItem.class)
+				.setFirstResult(firstResult)
+				.setMaxResults(maxResults)
+				.getResultList();
+	}
+
+}
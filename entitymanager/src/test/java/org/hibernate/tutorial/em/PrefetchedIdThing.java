@@ -0,0 +1,28 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * the same as {@link SequenceIdThing}, but with ids from blocks owned by the inserting thread
+ */
+@Entity
+public class PrefetchedIdThing {
+
+	@Id
+	@PrefetchedSequence(name = "PrefetchedIdThing_SEQ")
+	private Long id;
+
+	public PrefetchedIdThing() {
+		// this form used by Hibernate
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * generates ids from a database sequence like {@link jakarta.persistence.GenerationType#SEQUENCE},
+ * but without a lock shared by all threads, see {@link PrefetchingSequenceGenerator}
+ */
+@IdGeneratorType(PrefetchingSequenceGenerator.class)
+@Retention(RUNTIME)
+@Target({ FIELD, METHOD })
+public @interface PrefetchedSequence {
+
+	/**
+	 * the sequence, created with the schema
+	 */
+	String name();
+
+	/**
+	 * the ids reserved by one call of the sequence, which also is its increment
+	 */
+	int blockSize() default 50;
+
+	/**
+	 * the blocks reserved ahead of time, for threads whose block runs out
+	 */
+	int prefetchedBlocks() default 16;
+
+}
@@ -0,0 +1,174 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.lang.reflect.Member;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.EnumSet;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.boot.model.naming.Identifier;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+
+/**
+ * hands every thread its own block of sequence values. The pooled optimizers of Hibernate's sequence
+ * generator share one block, behind one lock, between all threads persisting an entity, which under
+ * enough concurrency makes the id generator the point where the threads queue up.
+ * <p>
+ * Here a thread takes its ids from a thread local block without any synchronization. When the block
+ * runs out, the thread takes a new one from a lock-free queue of blocks reserved ahead of time. A single
+ * background thread refills the queue whenever it runs low, with its own connection, so the sequence is
+ * called outside of the transactions of the inserting threads. Only if the queue runs empty, a thread
+ * reserves a block itself.
+ * <p>
+ * Like with the pooled-lo optimizer, the sequence increments by the block size, and every call reserves
+ * the block from its value on. The ids of a thread are ascending, but those of different threads
+ * interleave, and the unused ids of prefetched blocks are lost when the application stops. The blocks
+ * also outlive a restart of the sequence, call {@link #restarted()} afterwards to discard them.
+ */
+public class PrefetchingSequenceGenerator implements BeforeExecutionGenerator {
+
+	// one refill thread for all generators, refills are short and rare
+	private static final ExecutorService REFILLS = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "sequence-prefetch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final int blockSize;
+	private final int prefetchedBlocks;
+	private final String nextValueSql;
+
+	private final ThreadLocal<Block> blocks = new ThreadLocal<>();
+	private final Queue<Block> prefetched = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger prefetchedCount = new AtomicInteger();
+	private final AtomicBoolean refilling = new AtomicBoolean();
+	private final AtomicLong blocksReservedByCallers = new AtomicLong();
+	// counts the restarts of the sequence, blocks reserved before the last one are discarded
+	private final AtomicInteger restarts = new AtomicInteger();
+
+	public PrefetchingSequenceGenerator(PrefetchedSequence config, Member member, GeneratorCreationContext context) {
+		blockSize = config.blockSize();
+		prefetchedBlocks = config.prefetchedBlocks();
+
+		Database database = context.getDatabase();
+		Namespace namespace = database.getDefaultNamespace();
+		Identifier name = Identifier.toIdentifier(config.name());
+		if (namespace.locateSequence(name) == null) {
+			namespace.createSequence(name, physicalName -> new Sequence(null, null, null, physicalName, 1, blockSize));
+		}
+		nextValueSql = database.getDialect().getSequenceSupport().getSequenceNextValString(config.name());
+	}
+
+	@Override
+	public EnumSet<EventType> getEventTypes() {
+		return EventTypeSets.INSERT_ONLY;
+	}
+
+	@Override
+	public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+		Block block = blocks.get();
+		if (block == null || block.next == block.end || block.restarts != restarts.get()) {
+			block = nextPrefetched();
+			if (block == null) {
+				// the first block, or the refills fell behind
+				blocksReservedByCallers.incrementAndGet();
+				block = reserve(session);
+			}
+			blocks.set(block);
+			refillIfLow(session.getFactory());
+		}
+		return block.next++;
+	}
+
+	private Block nextPrefetched() {
+		for (Block block = prefetched.poll(); block != null; block = prefetched.poll()) {
+			prefetchedCount.decrementAndGet();
+			if (block.restarts == restarts.get()) {
+				return block;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * discards the blocks reserved so far, to be called after the sequence was restarted. The blocks of
+	 * the threads are dropped when they use them next. Blocks reserved concurrently with the restart
+	 * may be dropped as well, which only wastes their ids.
+	 */
+	void restarted() {
+		restarts.incrementAndGet();
+		while (nextPrefetched() != null) {
+			// drop the prefetched blocks, the next generate refills the queue
+		}
+	}
+
+	/**
+	 * how often a thread found no prefetched block and had to call the sequence itself
+	 */
+	long blocksReservedByCallers() {
+		return blocksReservedByCallers.get();
+	}
+
+	private void refillIfLow(SessionFactory sessionFactory) {
+		if (prefetchedCount.get() <= prefetchedBlocks / 2 && refilling.compareAndSet(false, true)) {
+			REFILLS.execute(() -> {
+				try (StatelessSession session = sessionFactory.openStatelessSession()) {
+					while (prefetchedCount.get() < prefetchedBlocks) {
+						prefetched.add(reserve(session));
+						prefetchedCount.incrementAndGet();
+					}
+				}
+				finally {
+					refilling.set(false);
+				}
+			});
+		}
+	}
+
+	private Block reserve(SharedSessionContract session) {
+		// read before calling the sequence, so a block reserved before a restart never looks current
+		int restartsBefore = restarts.get();
+		return session.doReturningWork(connection -> {
+			try (PreparedStatement nextValue = connection.prepareStatement(nextValueSql);
+					ResultSet resultSet = nextValue.executeQuery()) {
+				resultSet.next();
+				long start = resultSet.getLong(1);
+				return new Block(start, start + blockSize, restartsBefore);
+			}
+		});
+	}
+
+	private static final class Block {
+		// only used by the thread owning the block
+		private long next;
+		private final long end;
+		private final int restarts;
+
+		private Block(long next, long end, int restarts) {
+			this.next = next;
+			this.end = end;
+			this.restarts = restarts;
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * catches missing indexes. Registered as statement inspector in persistence.xml, it records
+ * the SQL Hibernate prepares while capturing, and runs H2's EXPLAIN on the recorded statements:
+ * <pre>
+ * QueryPlanChecker.startCapturing();
+ * // run the queries under test
+ * assertEquals(List.of(), QueryPlanChecker.fullScans(entityManagerFactory, 100));
+ * </pre>
+ * reports every statement that reads a table of at least 100 rows without using an index.
+ */
+public class QueryPlanChecker implements StatementInspector {
+
+	// H2 marks a table read without an index like /* PUBLIC.POST.tableScan */
+	private static final Pattern TABLE_SCAN = Pattern.compile("/\\* ([^ ]+)\\.([^ .]+)\\.tableScan \\*/");
+
+	private static final Set<String> STATEMENTS = new LinkedHashSet<>();
+	private static volatile boolean capturing;
+
+	@Override
+	public String inspect(String sql) {
+		if (capturing) {
+			synchronized (STATEMENTS) {
+				STATEMENTS.add(sql);
+			}
+		}
+		return sql;
+	}
+
+	static void startCapturing() {
+		synchronized (STATEMENTS) {
+			STATEMENTS.clear();
+		}
+		capturing = true;
+	}
+
+	static List<String> stopCapturing() {
+		capturing = false;
+		synchronized (STATEMENTS) {
+			return new ArrayList<>(STATEMENTS);
+		}
+	}
+
+	/**
+	 * stops capturing and explains the captured queries, updates and deletes
+	 *
+	 * @return the statements doing a full scan of a table with at least minRows rows, each with its plan
+	 */
+	static List<String> fullScans(EntityManagerFactory entityManagerFactory, long minRows) {
+		List<String> statements = stopCapturing();
+		List<String> fullScans = new ArrayList<>();
+		entityManagerFactory.unwrap(SessionFactory.class).inSession(session -> session.doWork(connection -> {
+			for (String sql : statements) {
+				String kind = sql.trim().toLowerCase(Locale.ROOT);
+				if (!kind.startsWith("select") && !kind.startsWith("update") && !kind.startsWith("delete")) {
+					continue;
+				}
+				String plan = explain(connection, sql);
+				Matcher scan = TABLE_SCAN.matcher(plan);
+				while (scan.find()) {
+					if (rowCount(connection, scan.group(1), scan.group(2)) >= minRows) {
+						fullScans.add(plan);
+						break;
+					}
+				}
+			}
+		}));
+		return fullScans;
+	}
+
+	private static String explain(Connection connection, String sql) throws SQLException {
+		// H2 explains statements with unbound parameters
+		try (PreparedStatement explain = connection.prepareStatement("explain " + sql);
+				ResultSet resultSet = explain.executeQuery()) {
+			StringBuilder plan = new StringBuilder();
+			while (resultSet.next()) {
+				plan.append(resultSet.getString(1)).append('\n');
+			}
+			return plan.toString();
+		}
+	}
+
+	private static long rowCount(Connection connection, String schema, String table) throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery("select count(*) from \"" + schema + "\".\"" + table + "\"")) {
+			resultSet.next();
+			return resultSet.getLong(1);
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import static jakarta.persistence.Persistence.createEntityManagerFactory;
+
+/**
+ * the EntityManagerFactory of the tests, built once per JVM. Bootstrapping and exporting the schema
+ * take most of the time of a short test, so the tests share the factory and only empty the tables
+ * in between. This also means the tests measure a warm factory, as an application would have.
+ */
+final class SharedEntityManagerFactory {
+
+	private static final Map<Map<String, ?>, EntityManagerFactory> FACTORIES = new ConcurrentHashMap<>();
+
+	private SharedEntityManagerFactory() {
+	}
+
+	static EntityManagerFactory get() {
+		return get(Map.of());
+	}
+
+	/**
+	 * a factory with the given properties overriding persistence.xml, one per distinct set of properties.
+	 * Factories that are used at the same time must not share a database.
+	 */
+	static EntityManagerFactory get(Map<String, ?> properties) {
+		return FACTORIES.computeIfAbsent(properties, SharedEntityManagerFactory::create);
+	}
+
+	private static EntityManagerFactory create(Map<String, ?> properties) {
+		// IMPORTANT: notice how the name here matches the name we
+		// gave the persistence-unit in persistence.xml
+		EntityManagerFactory entityManagerFactory = createEntityManagerFactory("org.hibernate.tutorial.jpa", properties);
+		Runtime.getRuntime().addShutdownHook(new Thread(entityManagerFactory::close));
+		return entityManagerFactory;
+	}
+
+	/**
+	 * empties all mapped tables and restarts the sequences, instead of dropping and creating the schema.
+	 * The id blocks the {@link PrefetchingSequenceGenerator}s reserved before are discarded with the
+	 * old sequence values, so the next test cannot get ids overlapping them.
+	 */
+	static void reset(EntityManagerFactory entityManagerFactory) {
+		entityManagerFactory.getSchemaManager().truncate();
+		SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+		sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+			if (persister.getGenerator() instanceof PrefetchingSequenceGenerator generator) {
+				generator.restarted();
+			}
+		});
+		sessionFactory.getStatistics().clear();
+	}
+
+}
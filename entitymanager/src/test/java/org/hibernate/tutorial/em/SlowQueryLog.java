@@ -0,0 +1,358 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import org.hibernate.engine.jdbc.connections.internal.DriverManagerConnectionProviderImpl;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.ServiceRegistryAwareService;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * a connection provider writing every statement slower than a threshold to a rotating log file,
+ * with the time to execute it and the time to read its results, the number of rows and the bind values,
+ * for a batch the number of rows in it and the bind values of the first one.
+ * It wraps Hibernate's built-in connection pool and is turned on by properties, like testSlowQueryLog
+ * does for the persistence unit of the tests:
+ * <pre>
+ * hibernate.connection.provider_class=org.hibernate.tutorial.em.SlowQueryLog
+ * slow_query_log.threshold_ms=100
+ * slow_query_log.file=target/slow-query-%g.log
+ * hibernate.use_sql_comments=true
+ * </pre>
+ * With SQL comments enabled, Hibernate prefixes every statement with the HQL or the entity it was
+ * generated for, which the log shows as the origin of the statement.
+ * <p>
+ * It is part of the test sources of this tutorial only. The other tutorials share no code with it and
+ * would need a copy, and the OSGi bundles run Hibernate 4.2, whose connection provider contract differs.
+ * <p>
+ * Only the connections and statements are wrapped, to time the execution and remember the bind values.
+ * The result set of a statement is wrapped, to time the fetching and count the rows, only when the
+ * execution alone took longer than the threshold, so reading the results of the other statements costs
+ * nothing extra. A statement that executes quickly but takes long to fetch is not logged. The log file
+ * is not even opened before the first slow statement.
+ */
+public class SlowQueryLog implements ConnectionProvider, Configurable, Stoppable, ServiceRegistryAwareService {
+
+	public static final String THRESHOLD = "slow_query_log.threshold_ms";
+	public static final String FILE = "slow_query_log.file";
+
+	private static final int FILE_LIMIT = 1024 * 1024;
+	private static final int FILE_COUNT = 5;
+
+	private final DriverManagerConnectionProviderImpl delegate = new DriverManagerConnectionProviderImpl();
+	private long thresholdNanos;
+	private String filePattern;
+	private Logger logger;
+	private FileHandler fileHandler;
+
+	@Override
+	public void injectServices(ServiceRegistryImplementor serviceRegistry) {
+		delegate.injectServices(serviceRegistry);
+	}
+
+	@Override
+	public void configure(Map<String, Object> configurationValues) {
+		delegate.configure(configurationValues);
+		thresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+				Long.parseLong(String.valueOf(configurationValues.getOrDefault(THRESHOLD, "100"))));
+		filePattern = String.valueOf(configurationValues.getOrDefault(FILE, "target/slow-query-%g.log"));
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		Connection connection = delegate.getConnection();
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new ConnectionHandler(connection));
+	}
+
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		// the pool only takes back the connections it handed out
+		delegate.closeConnection(((ConnectionHandler) Proxy.getInvocationHandler(connection)).target);
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return delegate.supportsAggressiveRelease();
+	}
+
+	@Override
+	public boolean isUnwrappableAs(Class<?> unwrapType) {
+		return unwrapType.isInstance(this) || delegate.isUnwrappableAs(unwrapType);
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> unwrapType) {
+		return unwrapType.isInstance(this) ? unwrapType.cast(this) : delegate.unwrap(unwrapType);
+	}
+
+	@Override
+	public synchronized void stop() {
+		if (fileHandler != null) {
+			fileHandler.close();
+			fileHandler = null;
+		}
+		delegate.stop();
+	}
+
+	boolean isSlow(long nanos) {
+		return nanos >= thresholdNanos;
+	}
+
+	void report(String sql, String binds, long executeNanos, long fetchNanos, long rows) {
+		if (!isSlow(executeNanos + fetchNanos)) {
+			return;
+		}
+		String origin = "";
+		String statement = sql.trim();
+		if (statement.startsWith("/*")) {
+			int end = statement.indexOf("*/");
+			origin = statement.substring(2, end).trim();
+			statement = statement.substring(end + 2).trim();
+		}
+		logger().warning(String.format("%d ms (execute %d ms, fetch %d ms, %d rows) origin [%s] sql [%s] binds %s",
+				TimeUnit.NANOSECONDS.toMillis(executeNanos + fetchNanos),
+				TimeUnit.NANOSECONDS.toMillis(executeNanos),
+				TimeUnit.NANOSECONDS.toMillis(fetchNanos),
+				rows, origin, statement.replaceAll("\\s+", " "), binds));
+	}
+
+	private synchronized Logger logger() {
+		if (logger == null) {
+			try {
+				Path parent = Path.of(filePattern).toAbsolutePath().getParent();
+				Files.createDirectories(parent);
+				fileHandler = new FileHandler(filePattern, FILE_LIMIT, FILE_COUNT, true);
+				fileHandler.setFormatter(new SimpleFormatter());
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Cannot open the slow query log " + filePattern, e);
+			}
+			logger = Logger.getAnonymousLogger();
+			logger.setUseParentHandlers(false);
+			logger.addHandler(fileHandler);
+		}
+		return logger;
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private final class ConnectionHandler implements InvocationHandler {
+		private final Connection target;
+
+		private ConnectionHandler(Connection target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			Object result = SlowQueryLog.invoke(target, method, args);
+			if (result instanceof Statement) {
+				// prepareStatement and prepareCall know their SQL up front, createStatement gets it on execute
+				String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+				return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { method.getReturnType() },
+						new StatementHandler((Statement) result, sql));
+			}
+			return result;
+		}
+	}
+
+	private final class StatementHandler implements InvocationHandler {
+		private final Statement target;
+		private final Map<Integer, Object> binds = new TreeMap<>();
+		private Map<Integer, Object> firstBatchedBinds;
+		private int batchedRows;
+		private String sql;
+		private ResultSetHandler open;
+		// execute() tells whether there is a result set, which is then read by getResultSet()
+		private long pendingExecuteNanos = -1;
+
+		private StatementHandler(Statement target, String sql) {
+			this.target = target;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("setNull") && args.length >= 2 && args[0] instanceof Integer) {
+				// the second argument is the SQL type, not the value
+				binds.put((Integer) args[0], null);
+			}
+			else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+				binds.put((Integer) args[0], args[1]);
+			}
+			else if (name.equals("clearParameters")) {
+				binds.clear();
+			}
+			else if (name.equals("addBatch")) {
+				if (batchedRows++ == 0) {
+					firstBatchedBinds = new TreeMap<>(binds);
+					if (args != null && sql == null) {
+						// Statement.addBatch(String), the first statement stands for the batch
+						sql = (String) args[0];
+					}
+				}
+			}
+			else if (name.equals("clearBatch")) {
+				clearBatch();
+			}
+			else if (name.startsWith("execute")) {
+				if (args != null && args.length > 0 && args[0] instanceof String) {
+					sql = (String) args[0];
+				}
+				finishOpen();
+				long start = System.nanoTime();
+				Object result = SlowQueryLog.invoke(target, method, args);
+				long executeNanos = System.nanoTime() - start;
+				if (result instanceof ResultSet) {
+					return resultSet((ResultSet) result, executeNanos);
+				}
+				if (Boolean.TRUE.equals(result)) {
+					pendingExecuteNanos = executeNanos;
+				}
+				else if (Boolean.FALSE.equals(result)) {
+					// execute() of an update
+					report(sql, describeBinds(), executeNanos, 0, Math.max(0, target.getUpdateCount()));
+				}
+				else {
+					report(sql, describeBinds(), executeNanos, 0, rows(result));
+				}
+				if (name.startsWith("executeLargeBatch") || name.startsWith("executeBatch")) {
+					// the driver has emptied the batch
+					clearBatch();
+				}
+				return result;
+			}
+			else if (name.equals("getResultSet") && pendingExecuteNanos >= 0) {
+				long executeNanos = pendingExecuteNanos;
+				pendingExecuteNanos = -1;
+				ResultSet resultSet = (ResultSet) SlowQueryLog.invoke(target, method, args);
+				return resultSet == null ? null : resultSet(resultSet, executeNanos);
+			}
+			else if (name.equals("close")) {
+				finishOpen();
+				if (pendingExecuteNanos >= 0) {
+					// the result set was never asked for
+					report(sql, describeBinds(), pendingExecuteNanos, 0, 0);
+					pendingExecuteNanos = -1;
+				}
+			}
+			return SlowQueryLog.invoke(target, method, args);
+		}
+
+		private String describeBinds() {
+			return batchedRows == 0 ? binds.toString() : firstBatchedBinds + " of the first of " + batchedRows + " rows";
+		}
+
+		private void clearBatch() {
+			batchedRows = 0;
+			firstBatchedBinds = null;
+		}
+
+		private void finishOpen() {
+			if (open != null) {
+				open.finish();
+				open = null;
+			}
+		}
+
+		private ResultSet resultSet(ResultSet resultSet, long executeNanos) {
+			if (!isSlow(executeNanos)) {
+				// not wrapped, so reading it costs nothing extra
+				return resultSet;
+			}
+			open = new ResultSetHandler(resultSet, this, executeNanos);
+			return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class }, open);
+		}
+	}
+
+	// the rows changed by executeUpdate, executeLargeUpdate, executeBatch or executeLargeBatch
+	private static long rows(Object result) {
+		long rows = 0;
+		if (result instanceof Number) {
+			rows = ((Number) result).longValue();
+		}
+		else if (result instanceof int[]) {
+			for (int count : (int[]) result) {
+				// drivers may only report success, without a count
+				rows += Math.max(0, count);
+			}
+		}
+		else if (result instanceof long[]) {
+			for (long count : (long[]) result) {
+				rows += Math.max(0, count);
+			}
+		}
+		return rows;
+	}
+
+	private final class ResultSetHandler implements InvocationHandler {
+		private final ResultSet target;
+		private final StatementHandler statement;
+		private final long executeNanos;
+		private long fetchNanos;
+		private long rows;
+		private boolean finished;
+
+		private ResultSetHandler(ResultSet target, StatementHandler statement, long executeNanos) {
+			this.target = target;
+			this.statement = statement;
+			this.executeNanos = executeNanos;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getName().equals("next")) {
+				long start = System.nanoTime();
+				Object hasRow = SlowQueryLog.invoke(target, method, args);
+				fetchNanos += System.nanoTime() - start;
+				if ((Boolean) hasRow) {
+					rows++;
+				}
+				return hasRow;
+			}
+			if (method.getName().equals("close")) {
+				finish();
+			}
+			return SlowQueryLog.invoke(target, method, args);
+		}
+
+		void finish() {
+			if (!finished) {
+				finished = true;
+				report(statement.sql, statement.binds.toString(), executeNanos, fetchNanos, rows);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.Transaction;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.transaction.Synchronization;
+
+/**
+ * transaction demarcation shared by the tests: the work runs in a new EntityManager and is
+ * committed, or rolled back if it fails. Plus a read-only variant.
+ */
+final class UnitOfWork {
+
+	private UnitOfWork() {
+	}
+
+	static void inTransaction(EntityManagerFactory entityManagerFactory, Consumer<EntityManager> work) {
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		EntityTransaction transaction = entityManager.getTransaction();
+		try {
+			transaction.begin();
+			work.accept(entityManager);
+			transaction.commit();
+		}
+		catch (Exception e) {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+			throw e;
+		}
+		finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * for units of work that only read. Entities are loaded read-only, so Hibernate keeps
+	 * no snapshot of their loaded state, and the commit neither flushes nor dirty checks.
+	 * Changes made to the entities are silently discarded.
+	 */
+	static void inReadOnlyTransaction(EntityManagerFactory entityManagerFactory, Consumer<EntityManager> work) {
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			Session session = entityManager.unwrap(Session.class);
+			session.setDefaultReadOnly(true);
+			session.setHibernateFlushMode(FlushMode.MANUAL);
+			inReadOnlyTransaction(session, () -> {
+				work.accept(entityManager);
+				return null;
+			});
+		}
+		finally {
+			entityManager.close();
+		}
+	}
+
+	/**
+	 * runs the work in a transaction of the session on a read-only JDBC connection, which lets the
+	 * database and driver optimize for reading. JDBC does not allow switching a connection within a
+	 * transaction, so it is switched before the transaction begins, and back once the transaction has
+	 * completed, before Hibernate releases the connection.
+	 */
+	static <R> R inReadOnlyTransaction(SharedSessionContract session, Supplier<R> work) {
+		Connection connection = session.doReturningWork(physical -> {
+			physical.setReadOnly(true);
+			return physical;
+		});
+		Transaction transaction;
+		try {
+			transaction = session.beginTransaction();
+		}
+		catch (RuntimeException e) {
+			setReadOnly(connection, false);
+			throw e;
+		}
+		// Hibernate notifies the synchronizations of a commit or rollback before it releases the connection
+		transaction.registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				setReadOnly(connection, false);
+			}
+		});
+		try {
+			R result = work.get();
+			transaction.commit();
+			return result;
+		}
+		catch (RuntimeException e) {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+			throw e;
+		}
+	}
+
+	private static void setReadOnly(Connection connection, boolean readOnly) {
+		try {
+			connection.setReadOnly(readOnly);
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException("Could not set the connection to read-only " + readOnly, e);
+		}
+	}
+
+}
@@ -8,13 +8,19 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "Users") // needed because 'User' (which would be the default table name) is a sql keyword
+@NamedEntityGraph(name = User.WITH_POSTS_PLAN, attributeNodes = @NamedAttributeNode("posts"))
 public class User {
 
+	// the user and all posts in a single statement
+	public static final String WITH_POSTS_PLAN = "user-with-posts";
+
 	@Id
 	@GeneratedValue
 	private Long id;
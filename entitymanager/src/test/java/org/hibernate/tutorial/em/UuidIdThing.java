@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.em;
+
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * ids generated in the JVM, without asking the database. Version 7 UUIDs start with a timestamp,
+ * so new ids land at the end of the primary key index like those of a sequence, instead of at
+ * random places like version 4 UUIDs. They are stored as 16 bytes, not as 36 characters of text.
+ */
+@Entity
+public class UuidIdThing {
+
+	@Id
+	@UuidGenerator(style = UuidGenerator.Style.VERSION_7)
+	@JdbcTypeCode(SqlTypes.BINARY)
+	@Column(length = 16)
+	private UUID id;
+
+	public UuidIdThing() {
+		// this form used by Hibernate
+	}
+
+	public UUID getId() {
+		return id;
+	}
+
+}
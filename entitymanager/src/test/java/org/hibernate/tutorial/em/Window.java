@@ -3,11 +3,13 @@ package org.hibernate.tutorial.em;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 
 @Entity
-@Table(name = "Windows") // needed because 'Window' (which would be the default table name) is a sql keyword
+@Table(name = "Windows", // needed because 'Window' (which would be the default table name) is a sql keyword
+		indexes = @Index(name = "idx_windows_house", columnList = "house_id")) // House.windows is loaded by house_id
 public class Window {
 
 	@Id
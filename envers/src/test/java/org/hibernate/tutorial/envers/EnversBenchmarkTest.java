@@ -0,0 +1,92 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.envers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import junit.framework.TestCase;
+
+import org.hibernate.Session;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static jakarta.persistence.Persistence.createEntityManagerFactory;
+
+/**
+ * Compares the ways of loading events, audited by Envers, from a CSV file.
+ * The printed numbers are what matters. The file is small by default,
+ * pass e.g. -Dbenchmark.events=1000000 to measure a realistic size.
+ */
+public class EnversBenchmarkTest extends TestCase {
+	private static final LocalDateTime START = LocalDateTime.of( 2025, 1, 1, 0, 0 );
+
+	private final int eventCount = Integer.getInteger( "benchmark.events", 50_000 );
+
+	private EntityManagerFactory entityManagerFactory;
+	private Path csv;
+
+	@Override
+	protected void setUp() throws IOException {
+		entityManagerFactory = createEntityManagerFactory( "org.hibernate.tutorial.envers", Map.of(
+				// printing every statement would dominate the measurements
+				"hibernate.show_sql", "false",
+				"jakarta.persistence.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+				"jakarta.persistence.schema-generation.database.action", "drop-and-create" ) );
+		csv = Files.createTempFile( "events", ".csv" );
+		try ( BufferedWriter writer = Files.newBufferedWriter( csv, UTF_8 ) ) {
+			writer.write( "title,eventDate\n" );
+			for ( int i = 0; i < eventCount; i++ ) {
+				writer.write( "\"Concert, part " + i + "\"," + START.plusMinutes( i * 14L ) + "\n" );
+			}
+		}
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		entityManagerFactory.close();
+		Files.delete( csv );
+	}
+
+	private void measure(String label, Loader loader) throws IOException {
+		long start = System.nanoTime();
+		long loaded = loader.load();
+		long millis = Math.max( 1, ( System.nanoTime() - start ) / 1_000_000 );
+		System.out.printf( "[benchmark] %-40s %8d ms, %10.0f rows/s%n", label, millis, loaded * 1000d / millis );
+		assertEquals( eventCount, loaded );
+	}
+
+	public void testBulkLoad() throws IOException {
+		measure( eventCount + " events, csvread", () -> EventBulkLoad.loadByCsvRead( entityManagerFactory, csv ) );
+		measure( eventCount + " events, stateless inserts", () -> EventBulkLoad.loadByInserts( entityManagerFactory, csv, 50 ) );
+
+		// what the bulk load replaces, a persist per event with Envers auditing every one of them
+		measure( eventCount + " events, persist", () -> {
+			EntityManager entityManager = entityManagerFactory.createEntityManager();
+			entityManager.unwrap( Session.class ).setJdbcBatchSize( 50 );
+			entityManager.getTransaction().begin();
+			for ( int i = 0; i < eventCount; i++ ) {
+				entityManager.persist( new Event( "Concert, part " + i, START.plusMinutes( i * 14L ) ) );
+				if ( i % 50 == 49 ) {
+					entityManager.flush();
+					entityManager.clear();
+				}
+			}
+			entityManager.getTransaction().commit();
+			entityManager.close();
+			return eventCount;
+		} );
+	}
+
+	private interface Loader {
+		long load() throws IOException;
+	}
+}
@@ -4,8 +4,12 @@
  */
 package org.hibernate.tutorial.envers;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 
@@ -85,4 +89,42 @@ public class EnversIllustrationTest extends TestCase {
 		entityManager.getTransaction().commit();
         entityManager.close();
 	}
+
+	public void testBulkLoad() throws IOException {
+		Path csv = Files.createTempFile( "events", ".csv" );
+		Files.writeString( csv, "title,eventDate\n"
+				+ "\"A concert, with \"\"quotes\"\"\",2025-05-01T20:00\n"
+				+ "A lecture without a date,\n" );
+		// a database of its own, the ids and revisions of testBasicUsage are fixed
+		EntityManagerFactory bulkLoadFactory = createEntityManagerFactory( "org.hibernate.tutorial.envers",
+				Map.of( "jakarta.persistence.jdbc.url", "jdbc:h2:mem:bulkload;DB_CLOSE_DELAY=-1" ) );
+		try {
+			assertEquals( 2, EventBulkLoad.loadByCsvRead( bulkLoadFactory, csv ) );
+			// what other databases get
+			assertEquals( 2, EventBulkLoad.loadByInserts( bulkLoadFactory, csv, 50 ) );
+
+			EntityManager entityManager = bulkLoadFactory.createEntityManager();
+			entityManager.getTransaction().begin();
+			List<Event> events = entityManager.createQuery( "from Event order by id", Event.class ).getResultList();
+			assertEquals( 4, events.size() );
+			assertEquals( "A concert, with \"quotes\"", events.get( 0 ).getTitle() );
+			assertNull( events.get( 1 ).getDate() );
+
+			// both loads are in the history, as one revision each
+			AuditReader reader = AuditReaderFactory.get( entityManager );
+			for ( Event event : events ) {
+				List<Number> revisions = reader.getRevisions( Event.class, event.getId() );
+				assertEquals( 1, revisions.size() );
+				assertEquals( event.getTitle(), reader.find( Event.class, event.getId(), revisions.get( 0 ) ).getTitle() );
+			}
+			assertFalse( reader.getRevisions( Event.class, events.get( 0 ).getId() )
+					.equals( reader.getRevisions( Event.class, events.get( 2 ).getId() ) ) );
+			entityManager.getTransaction().commit();
+			entityManager.close();
+		}
+		finally {
+			bulkLoadFactory.close();
+			Files.delete( csv );
+		}
+	}
 }
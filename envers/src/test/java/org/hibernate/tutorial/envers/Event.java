@@ -9,6 +9,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 import org.hibernate.envers.Audited;
@@ -19,7 +20,9 @@ import org.hibernate.envers.Audited;
 public class Event {
 
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = "events_seq")
+	// named, so EventBulkLoad can take ids from it
+	@SequenceGenerator(name = "events_seq", sequenceName = "Events_SEQ")
 	private Long id;
 
 	private String title;
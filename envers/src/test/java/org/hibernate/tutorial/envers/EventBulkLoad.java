@@ -0,0 +1,205 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ * Copyright Red Hat Inc. and Hibernate Authors
+ */
+package org.hibernate.tutorial.envers;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.DefaultRevisionEntity;
+import org.hibernate.envers.RevisionType;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads events from a CSV file for the initial load of a database, without a persist per event.
+ * The file has a header line and the columns title and eventDate, dates are ISO-8601 like
+ * 2025-01-31T18:30, and an empty field is null.
+ * <pre>
+ * long loaded = EventBulkLoad.load( entityManagerFactory, Path.of( "events.csv" ) );
+ * </pre>
+ * On H2 the whole file is loaded by one INSERT ... SELECT FROM CSVREAD, so the rows go from the file to
+ * the table inside the database. Other databases get the events from a stateless session in JDBC batches.
+ * <p>
+ * Envers sees neither path, so both record the loaded events as added in a revision of their own, the
+ * audit rows a persist would have left. Afterwards the events and the cached query results are evicted
+ * from the second-level cache, which did not see the inserts either. The H2 path takes one value of
+ * Events_SEQ per event, where the pooled optimizer of a persist takes one per 50 events.
+ */
+public final class EventBulkLoad {
+
+	private static final String AUDIT_INSERT =
+			"insert into Events_AUD (id, REV, REVTYPE, title, eventDate) values (?, ?, ?, ?, ?)";
+
+	private EventBulkLoad() {
+	}
+
+	/**
+	 * @return the number of loaded events
+	 */
+	public static long load(EntityManagerFactory entityManagerFactory, Path csv) throws IOException {
+		if ( entityManagerFactory.unwrap( SessionFactoryImplementor.class ).getJdbcServices().getDialect()
+				instanceof H2Dialect ) {
+			return loadByCsvRead( entityManagerFactory, csv );
+		}
+		return loadByInserts( entityManagerFactory, csv, 50 );
+	}
+
+	static long loadByCsvRead(EntityManagerFactory entityManagerFactory, Path csv) {
+		// CSVREAD needs the file name when the statement is prepared, it cannot be a parameter
+		String file = csv.toAbsolutePath().toString().replace( "'", "''" );
+		long[] loaded = new long[1];
+		entityManagerFactory.unwrap( SessionFactory.class ).inTransaction( session -> {
+			int revision = newRevision( session );
+			session.doWork( connection -> {
+				// the rows of the file go into Events, and the inserted rows, with their ids, into Events_AUD
+				try ( PreparedStatement insert = connection.prepareStatement(
+						"insert into Events_AUD (id, REV, REVTYPE, title, eventDate)"
+								+ " select id, ?, ?, title, eventDate from final table ("
+								+ "insert into Events (id, title, eventDate)"
+								+ " select next value for Events_SEQ, title, cast(eventDate as timestamp)"
+								+ " from csvread('" + file + "', null, 'charset=UTF-8'))" ) ) {
+					insert.setInt( 1, revision );
+					insert.setByte( 2, RevisionType.ADD.getRepresentation() );
+					loaded[0] = insert.executeUpdate();
+				}
+			} );
+		} );
+		evictCaches( entityManagerFactory );
+		return loaded[0];
+	}
+
+	static long loadByInserts(EntityManagerFactory entityManagerFactory, Path csv, int batchSize) throws IOException {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap( SessionFactory.class );
+		// Envers creates revisions for the sessions it tracks, a stateless session is none of them.
+		// It is committed on its own, so a failed load leaves an empty revision behind
+		int[] revision = new int[1];
+		sessionFactory.inTransaction( session -> revision[0] = newRevision( session ) );
+
+		long loaded = 0;
+		try ( BufferedReader reader = Files.newBufferedReader( csv, UTF_8 );
+				StatelessSession session = sessionFactory.openStatelessSession() ) {
+			session.setJdbcBatchSize( batchSize );
+			Transaction transaction = session.beginTransaction();
+			try {
+				List<Event> unaudited = new ArrayList<>();
+				// the header
+				readRecord( reader );
+				for ( List<String> record = readRecord( reader ); record != null; record = readRecord( reader ) ) {
+					String date = record.size() > 1 ? record.get( 1 ) : null;
+					Event event = new Event( record.get( 0 ), date == null ? null : LocalDateTime.parse( date ) );
+					// the id comes from the sequence before the insert is batched
+					session.insert( event );
+					unaudited.add( event );
+					if ( unaudited.size() == batchSize ) {
+						audit( session, unaudited, revision[0] );
+					}
+					loaded++;
+				}
+				audit( session, unaudited, revision[0] );
+				transaction.commit();
+			}
+			catch (RuntimeException | IOException e) {
+				if ( transaction.isActive() ) {
+					transaction.rollback();
+				}
+				throw e;
+			}
+		}
+		evictCaches( entityManagerFactory );
+		return loaded;
+	}
+
+	// the revision Envers would have created for a persist in this transaction
+	private static int newRevision(Session session) {
+		DefaultRevisionEntity revision =
+				AuditReaderFactory.get( session ).getCurrentRevision( DefaultRevisionEntity.class, true );
+		// the audit rows refer to it
+		session.flush();
+		return revision.getId();
+	}
+
+	private static void audit(StatelessSession session, List<Event> events, int revision) {
+		session.doWork( connection -> {
+			try ( PreparedStatement insert = connection.prepareStatement( AUDIT_INSERT ) ) {
+				for ( Event event : events ) {
+					insert.setLong( 1, event.getId() );
+					insert.setInt( 2, revision );
+					insert.setByte( 3, RevisionType.ADD.getRepresentation() );
+					insert.setString( 4, event.getTitle() );
+					insert.setObject( 5, event.getDate() );
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		} );
+		events.clear();
+	}
+
+	private static void evictCaches(EntityManagerFactory entityManagerFactory) {
+		entityManagerFactory.getCache().evict( Event.class );
+		entityManagerFactory.unwrap( SessionFactory.class ).getCache().evictQueryRegions();
+	}
+
+	// the fields of the next line, null at the end of the file. Like for CSVREAD, quoted fields
+	// may contain commas, line breaks and doubled quotes, and an empty field that is not quoted is null
+	private static List<String> readRecord(Reader reader) throws IOException {
+		int c = reader.read();
+		if ( c < 0 ) {
+			return null;
+		}
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean inQuotes = false;
+		boolean quoted = false;
+		while ( true ) {
+			if ( inQuotes ) {
+				if ( c < 0 ) {
+					throw new EOFException( "The file ends within a quoted field" );
+				}
+				if ( c == '"' ) {
+					c = reader.read();
+					if ( c != '"' ) {
+						inQuotes = false;
+						continue;
+					}
+				}
+				field.append( (char) c );
+			}
+			else if ( c == '"' ) {
+				inQuotes = true;
+				quoted = true;
+			}
+			else if ( c == ',' || c == '\n' || c < 0 ) {
+				fields.add( field.length() == 0 && !quoted ? null : field.toString() );
+				if ( c != ',' ) {
+					return fields;
+				}
+				field.setLength( 0 );
+				quoted = false;
+			}
+			else if ( c != '\r' ) {
+				field.append( (char) c );
+			}
+			c = reader.read();
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.osgitest.DataPointService;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Refreshes this bundle, so the persistence unit is built again, and measures the time until the
+ * DataPointService is registered again, for some rounds. The service waits for the EntityManagerFactory,
+ * so the time includes finding the entities. Run it on a build with exclude-unlisted-classes set to false
+ * in persistence.xml to compare with scanning the bundle.
+ * <p>
+ * The refresh unregisters this command too, the rounds are finished all the same.
+ */
+@Command(scope = "dp", name = "activationTime")
+public class ActivationTimeCommand implements Action {
+	@Argument(index = 0, name = "Rounds", required = false, description = "Times the bundle is refreshed", multiValued = false)
+	String rounds = "5";
+
+	public Object execute(CommandSession session) throws Exception {
+		final Bundle bundle = FrameworkUtil.getBundle( getClass() );
+		// the context of this bundle is invalid while it is refreshed, the one of the framework is not
+		BundleContext context = bundle.getBundleContext().getBundle( 0 ).getBundleContext();
+		FrameworkWiring wiring = context.getBundle().adapt( FrameworkWiring.class );
+
+		int roundCount = Integer.parseInt( rounds );
+		double total = 0;
+		for ( int round = 1; round <= roundCount; round++ ) {
+			final CountDownLatch registered = new CountDownLatch( 1 );
+			ServiceListener listener = new ServiceListener() {
+				public void serviceChanged(ServiceEvent event) {
+					if ( event.getType() == ServiceEvent.REGISTERED
+							&& event.getServiceReference().getBundle().getBundleId() == bundle.getBundleId() ) {
+						registered.countDown();
+					}
+				}
+			};
+			context.addServiceListener( listener, "(objectClass=" + DataPointService.class.getName() + ")" );
+			try {
+				long begin = System.nanoTime();
+				wiring.refreshBundles( Collections.singleton( bundle ) );
+				if ( !registered.await( 60, TimeUnit.SECONDS ) ) {
+					System.out.println( "The DataPointService was not registered within 60 s" );
+					return null;
+				}
+				double millis = ( System.nanoTime() - begin ) / 1e6;
+				total += millis;
+				System.out.println( String.format( "round %3d: %8.2f ms", round, millis ) );
+			}
+			finally {
+				context.removeServiceListener( listener );
+			}
+		}
+		System.out.println( String.format( "average: %8.2f ms", total / roundCount ) );
+		return null;
+	}
+
+}
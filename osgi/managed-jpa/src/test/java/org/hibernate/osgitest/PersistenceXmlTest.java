@@ -0,0 +1,106 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.osgitest;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import junit.framework.TestCase;
+
+import org.hibernate.osgitest.entity.DataPoint;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+/**
+ * The persistence unit lists its classes and excludes all others, so the bundle is not scanned when the
+ * unit is built. An entity this bundle adds without listing it would be unknown to the unit, so this
+ * fails the build instead.
+ */
+public class PersistenceXmlTest extends TestCase {
+
+	public void testManagedClassesAreListed() throws Exception {
+		Set<String> listed = listedClasses();
+		File classes = new File( DataPoint.class.getProtectionDomain().getCodeSource().getLocation().toURI() );
+		List<String> unlisted = new ArrayList<String>();
+		for ( String className : classNames( classes, "" ) ) {
+			Class<?> type = Class.forName( className, false, getClass().getClassLoader() );
+			if ( isManaged( type ) && !listed.contains( className ) ) {
+				unlisted.add( className );
+			}
+		}
+		assertEquals( "Add these classes to META-INF/persistence.xml", Collections.<String>emptyList(), unlisted );
+	}
+
+	public void testListedClassesAreManaged() throws Exception {
+		Set<String> listed = listedClasses();
+		assertFalse( listed.isEmpty() );
+		for ( String className : listed ) {
+			assertTrue( className + " is not an entity", isManaged( Class.forName( className ) ) );
+		}
+	}
+
+	private static boolean isManaged(Class<?> type) {
+		return type.isAnnotationPresent( Entity.class ) || type.isAnnotationPresent( Embeddable.class )
+				|| type.isAnnotationPresent( MappedSuperclass.class );
+	}
+
+	private Set<String> listedClasses() throws Exception {
+		InputStream in = getClass().getClassLoader().getResourceAsStream( "META-INF/persistence.xml" );
+		assertNotNull( in );
+		try {
+			Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( in );
+			NodeList classes = document.getElementsByTagName( "class" );
+			Set<String> names = new HashSet<String>();
+			for ( int i = 0; i < classes.getLength(); i++ ) {
+				names.add( classes.item( i ).getTextContent().trim() );
+			}
+			return names;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	// the names of the classes in a directory of class files and its subdirectories
+	private static List<String> classNames(File directory, String packagePrefix) {
+		List<String> names = new ArrayList<String>();
+		for ( File file : directory.listFiles() ) {
+			String name = file.getName();
+			if ( file.isDirectory() ) {
+				names.addAll( classNames( file, packagePrefix + name + "." ) );
+			}
+			else if ( name.endsWith( ".class" ) ) {
+				names.add( packagePrefix + name.substring( 0, name.length() - ".class".length() ) );
+			}
+		}
+		return names;
+	}
+}
@@ -31,11 +31,56 @@ public interface DataPointService {
 
 	public void add(DataPoint dp);
 
+	/**
+	 * adds many data points in one transaction
+	 */
+	public void addAll(List<DataPoint> dps);
+
 	public void update(DataPoint dp);
 
+	/**
+	 * renames without loading the data point first, and increments its version
+	 *
+	 * @return false if there is no data point with the id
+	 */
+	public boolean updateName(long id, String name);
+
+	/**
+	 * renames if the data point still has the given version, and increments it
+	 *
+	 * @throws javax.persistence.OptimisticLockException if the data point was changed or deleted in between
+	 */
+	public void updateName(long id, long version, String name);
+
+	/**
+	 * renames while holding a database lock on the data point, so concurrent renames wait instead of failing
+	 */
+	public void updateNameLocked(long id, String name);
+
 	public DataPoint get(long id);
 
 	public List<DataPoint> getAll();
 
 	public void deleteAll();
+
+	/**
+	 * deletes all data points in chunks of ascending ids, committing every chunk on its own, so no lock
+	 * and no undo log lives longer than one chunk. Data points added after the delete started are kept.
+	 * Interrupting the thread cancels the delete after the current chunk.
+	 *
+	 * @param chunkSize the width of the id range of a chunk, and so the most rows a chunk deletes, at least 1
+	 * @param maxRowsPerSecond deletes no faster than this, unlimited if 0
+	 * @param progress told about every chunk, may be null
+	 * @return the number of deleted data points
+	 * @throws IllegalArgumentException if chunkSize is less than 1
+	 */
+	public long deleteAll(int chunkSize, double maxRowsPerSecond, DeleteProgress progress);
+
+	public interface DeleteProgress {
+
+		/**
+		 * @return false to cancel the delete
+		 */
+		boolean chunkDeleted(long deleted, long lastId, long maxId);
+	}
 }
@@ -23,6 +23,10 @@ package org.hibernate.osgitest;
 import java.util.List;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
 
 import org.hibernate.osgitest.entity.DataPoint;
 
@@ -31,24 +35,129 @@ import org.hibernate.osgitest.entity.DataPoint;
  */
 public class DataPointServiceImpl implements DataPointService {
 
+	private final EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * uses the EntityManagerFactory of this bundle, through HibernateUtil
+	 */
+	public DataPointServiceImpl() {
+		this( null );
+	}
+
+	/**
+	 * uses the given EntityManagerFactory, e.g. outside of an OSGi container
+	 */
+	public DataPointServiceImpl(EntityManagerFactory entityManagerFactory) {
+		this.entityManagerFactory = entityManagerFactory;
+	}
+
 	public void add(DataPoint dp) {
-		EntityManager em = HibernateUtil.getEntityManager();
+		EntityManager em = createEntityManager();
 		em.getTransaction().begin();
 		em.persist( dp );
 		em.getTransaction().commit();
 		em.close();
 	}
 
+	public void addAll(List<DataPoint> dps) {
+		EntityManager em = createEntityManager();
+		try {
+			em.getTransaction().begin();
+			for ( int i = 0; i < dps.size(); i++ ) {
+				em.persist( dps.get( i ) );
+				if ( ( i + 1 ) % 50 == 0 ) {
+					em.flush();
+					em.clear();
+				}
+			}
+			em.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( em );
+			throw e;
+		}
+		finally {
+			em.close();
+		}
+	}
+
 	public void update(DataPoint dp) {
-		EntityManager em = HibernateUtil.getEntityManager();
+		EntityManager em = createEntityManager();
 		em.getTransaction().begin();
 		em.merge( dp );
 		em.getTransaction().commit();
 		em.close();
 	}
 
+	public boolean updateName(long id, String name) {
+		EntityManager em = createEntityManager();
+		try {
+			em.getTransaction().begin();
+			// "versioned" makes the bulk update increment the version, like an update of the loaded entity would
+			int updated = em.createQuery( "update versioned DataPoint set name = :name where id = :id" )
+					.setParameter( "name", name )
+					.setParameter( "id", id )
+					.executeUpdate();
+			em.getTransaction().commit();
+			return updated == 1;
+		}
+		catch (RuntimeException e) {
+			rollback( em );
+			throw e;
+		}
+		finally {
+			em.close();
+		}
+	}
+
+	public void updateName(long id, long version, String name) {
+		EntityManager em = createEntityManager();
+		int updated;
+		try {
+			em.getTransaction().begin();
+			updated = em.createQuery(
+					"update DataPoint set name = :name, version = version + 1 where id = :id and version = :version" )
+					.setParameter( "name", name )
+					.setParameter( "id", id )
+					.setParameter( "version", version )
+					.executeUpdate();
+			em.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( em );
+			throw e;
+		}
+		finally {
+			em.close();
+		}
+		if ( updated == 0 ) {
+			throw new OptimisticLockException( "DataPoint " + id + " is no longer at version " + version );
+		}
+	}
+
+	public void updateNameLocked(long id, String name) {
+		EntityManager em = createEntityManager();
+		try {
+			em.getTransaction().begin();
+			// select ... for update
+			DataPoint dp = em.find( DataPoint.class, id, LockModeType.PESSIMISTIC_WRITE );
+			if ( dp == null ) {
+				throw new EntityNotFoundException( "No DataPoint " + id );
+			}
+			dp.setName( name );
+			em.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( em );
+			throw e;
+		}
+		finally {
+			em.close();
+		}
+	}
+
 	public DataPoint get(long id) {
-		EntityManager em = HibernateUtil.getEntityManager();
+		EntityManager em = createEntityManager();
 		em.getTransaction().begin();
 		DataPoint dp = (DataPoint) em.createQuery( "from DataPoint dp where dp.id=" + id ).getSingleResult();
 		em.getTransaction().commit();
@@ -57,7 +166,7 @@ public class DataPointServiceImpl implements DataPointService {
 	}
 
 	public List<DataPoint> getAll() {
-		EntityManager em = HibernateUtil.getEntityManager();
+		EntityManager em = createEntityManager();
 		em.getTransaction().begin();
 		List list = em.createQuery( "from DataPoint" ).getResultList();
 		em.getTransaction().commit();
@@ -66,11 +175,88 @@ public class DataPointServiceImpl implements DataPointService {
 	}
 
 	public void deleteAll() {
-		EntityManager em = HibernateUtil.getEntityManager();
+		EntityManager em = createEntityManager();
 		em.getTransaction().begin();
 		em.createQuery( "delete from DataPoint" ).executeUpdate();
 		em.getTransaction().commit();
 		em.close();
 	}
 
+	public long deleteAll(int chunkSize, double maxRowsPerSecond, DeleteProgress progress) {
+		if ( chunkSize < 1 ) {
+			throw new IllegalArgumentException( "The chunk size has to be at least 1, not " + chunkSize );
+		}
+		Object[] range;
+		EntityManager em = createEntityManager();
+		try {
+			range = (Object[]) em.createQuery( "select min(id), max(id) from DataPoint" ).getSingleResult();
+		}
+		finally {
+			em.close();
+		}
+		if ( range[0] == null ) {
+			return 0;
+		}
+		long maxId = (Long) range[1];
+
+		long deleted = 0;
+		long start = System.nanoTime();
+		for ( long from = (Long) range[0]; from <= maxId; from += chunkSize ) {
+			if ( Thread.currentThread().isInterrupted() ) {
+				break;
+			}
+			long to = Math.min( from + chunkSize - 1, maxId );
+			deleted += deleteChunk( from, to );
+
+			if ( progress != null && !progress.chunkDeleted( deleted, to, maxId ) ) {
+				break;
+			}
+			if ( maxRowsPerSecond > 0 ) {
+				// wait until the deleted rows are within the rate
+				long aheadNanos = (long) ( deleted / maxRowsPerSecond * 1000000000L ) - ( System.nanoTime() - start );
+				if ( aheadNanos > 0 ) {
+					try {
+						Thread.sleep( aheadNanos / 1000000, (int) ( aheadNanos % 1000000 ) );
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+		}
+		return deleted;
+	}
+
+	private int deleteChunk(long from, long to) {
+		EntityManager em = createEntityManager();
+		try {
+			em.getTransaction().begin();
+			int deleted = em.createQuery( "delete from DataPoint where id between :from and :to" )
+					.setParameter( "from", from )
+					.setParameter( "to", to )
+					.executeUpdate();
+			em.getTransaction().commit();
+			return deleted;
+		}
+		catch (RuntimeException e) {
+			rollback( em );
+			throw e;
+		}
+		finally {
+			em.close();
+		}
+	}
+
+	private EntityManager createEntityManager() {
+		return entityManagerFactory == null ? HibernateUtil.getEntityManager() : entityManagerFactory.createEntityManager();
+	}
+
+	// after a failed statement or commit, so the connection does not keep the transaction open
+	private static void rollback(EntityManager em) {
+		if ( em.getTransaction().isActive() ) {
+			em.getTransaction().rollback();
+		}
+	}
+
 }
@@ -0,0 +1,131 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.osgitest;
+
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.spi.PersistenceProvider;
+
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Filter;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
+
+/**
+ * Creates an EntityManagerFactory of the unmanaged-jpa unit from Hibernate's PersistenceProvider service, found
+ * through a ServiceTracker. The tracker is opened by the first call, under a lock, and published through a volatile
+ * field, so every later call reads the field and the factory the tracker caches without locking. When the
+ * provider is unregistered, e.g. because the Hibernate bundle restarts, its EntityManagerFactory is closed, and
+ * the next registration gets a new one. Calls while there is no provider wait for one.
+ * <p/>
+ * HibernateUtil holds the one the data point service uses. Each other instance has its own factory.
+ */
+public class EntityManagerFactoryHolder {
+
+	// how long a call waits for the PersistenceProvider service to be registered
+	private static final long SERVICE_TIMEOUT_MILLIS = 30000;
+
+	// other providers in the container, e.g. Aries or EclipseLink, are not meant to build this unit
+	private static final String HIBERNATE_PROVIDER_FILTER = "(&(" + Constants.OBJECTCLASS + "="
+			+ PersistenceProvider.class.getName() + ")(javax.persistence.provider=org.hibernate.ejb.HibernatePersistence))";
+
+	private final BundleContext context;
+
+	// overrides of the persistence unit's properties
+	private final Map<String, Object> properties;
+
+	private volatile ServiceTracker<PersistenceProvider, EntityManagerFactory> tracker;
+
+	public EntityManagerFactoryHolder(BundleContext context, Map<String, Object> properties) {
+		this.context = context;
+		this.properties = properties;
+	}
+
+	public EntityManagerFactory getEntityManagerFactory() {
+		ServiceTracker<PersistenceProvider, EntityManagerFactory> current = tracker;
+		if ( current == null ) {
+			current = openTracker();
+		}
+		EntityManagerFactory emf = null;
+		try {
+			// returns the cached factory right away, if there is one
+			emf = current.waitForService( SERVICE_TIMEOUT_MILLIS );
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if ( emf == null ) {
+			throw new IllegalStateException( "No Hibernate " + PersistenceProvider.class.getName() + " service registered" );
+		}
+		return emf;
+	}
+
+	private synchronized ServiceTracker<PersistenceProvider, EntityManagerFactory> openTracker() {
+		if ( tracker == null ) {
+			ServiceTracker<PersistenceProvider, EntityManagerFactory> opened =
+					new ServiceTracker<PersistenceProvider, EntityManagerFactory>( context, hibernateProvider(), null ) {
+						@Override
+						public EntityManagerFactory addingService(ServiceReference<PersistenceProvider> reference) {
+							PersistenceProvider persistenceProvider = context.getService( reference );
+							if ( persistenceProvider == null ) {
+								return null;
+							}
+							return persistenceProvider.createEntityManagerFactory( "unmanaged-jpa", properties );
+						}
+
+						@Override
+						public void removedService(ServiceReference<PersistenceProvider> reference,
+								EntityManagerFactory emf) {
+							// entity managers still open fail from now on, the provider's classes are going away
+							emf.close();
+							context.ungetService( reference );
+						}
+					};
+			opened.open();
+			// published only once it tracks
+			tracker = opened;
+		}
+		return tracker;
+	}
+
+	private Filter hibernateProvider() {
+		try {
+			return context.createFilter( HIBERNATE_PROVIDER_FILTER );
+		}
+		catch (InvalidSyntaxException e) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+	/**
+	 * stops tracking and closes the EntityManagerFactory. The next call opens a new tracker, like the first
+	 * call after the bundle started.
+	 */
+	public synchronized void close() {
+		if ( tracker != null ) {
+			tracker.close();
+			tracker = null;
+		}
+	}
+}
@@ -20,38 +20,45 @@
  */
 package org.hibernate.osgitest;
 
+import java.util.Collections;
+
 import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.spi.PersistenceProvider;
 
-import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.FrameworkUtil;
-import org.osgi.framework.ServiceReference;
 
 /**
+ * Creates the entity managers of this bundle, from the EntityManagerFactory of an EntityManagerFactoryHolder.
+ *
  * @author Brett Meyer
  */
 
 public class HibernateUtil {
 
-	private static EntityManagerFactory emf;
+	private static volatile EntityManagerFactoryHolder holder;
 
 	public static EntityManager getEntityManager() {
-		return getEntityManagerFactory().createEntityManager();
+		EntityManagerFactoryHolder current = holder;
+		if ( current == null ) {
+			throw new IllegalStateException( "The unmanaged-jpa bundle has not been started" );
+		}
+		return current.getEntityManagerFactory().createEntityManager();
 	}
 
-	private static EntityManagerFactory getEntityManagerFactory() {
-		if ( emf == null ) {
-			Bundle thisBundle = FrameworkUtil.getBundle( HibernateUtil.class );
-			// Could get this by wiring up OsgiTestBundleActivator as well.
-			BundleContext context = thisBundle.getBundleContext();
-
-			ServiceReference serviceReference = context.getServiceReference( PersistenceProvider.class.getName() );
-			PersistenceProvider persistenceProvider = (PersistenceProvider) context.getService( serviceReference );
+	/**
+	 * called by OsgiTestBundleActivator when this bundle starts, the EntityManagerFactory is created by the first call
+	 */
+	static void start(BundleContext context) {
+		holder = new EntityManagerFactoryHolder( context, Collections.<String, Object>emptyMap() );
+	}
 
-			emf = persistenceProvider.createEntityManagerFactory( "unmanaged-jpa", null );
+	/**
+	 * closes the EntityManagerFactory, called by OsgiTestBundleActivator when this bundle stops
+	 */
+	static void stop() {
+		EntityManagerFactoryHolder current = holder;
+		holder = null;
+		if ( current != null ) {
+			current.close();
 		}
-		return emf;
 	}
 }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.osgitest.EntityManagerFactoryHolder;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Lets many threads make the first call to a new EntityManagerFactoryHolder at the same moment, like requests
+ * arriving while the bundle starts, for some rounds. Reports how many distinct factories the threads of a round
+ * got, and how many calls failed. Every round creates a new EntityManagerFactory, which all threads of the round
+ * should share. The holders are separate from the one of HibernateUtil and do not touch the schema, so the data
+ * points and the factory the data point service uses are left alone.
+ */
+@Command(scope = "dp", name = "startupStress")
+public class StartupStressCommand implements Action {
+	@Argument(index = 0, name = "Threads", required = false, description = "Threads calling at once", multiValued = false)
+	String threads = "32";
+
+	@Argument(index = 1, name = "Rounds", required = false, description = "Times a new factory is created", multiValued = false)
+	String rounds = "20";
+
+	// create-drop would drop the data point table of the shared factory when a round's factory is closed
+	private static final Map<String, Object> NO_SCHEMA_CHANGES =
+			Collections.<String, Object>singletonMap( "hibernate.hbm2ddl.auto", "none" );
+
+	private BundleContext bundleContext;
+
+	public void setBundleContext(BundleContext bundleContext) {
+		this.bundleContext = bundleContext;
+	}
+
+	public Object execute(CommandSession session) throws Exception {
+		final int threadCount = Integer.parseInt( threads );
+		int roundCount = Integer.parseInt( rounds );
+		ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+		try {
+			for ( int round = 1; round <= roundCount; round++ ) {
+				final EntityManagerFactoryHolder holder = new EntityManagerFactoryHolder( bundleContext, NO_SCHEMA_CHANGES );
+				// releases all threads at the same moment
+				final CyclicBarrier start = new CyclicBarrier( threadCount );
+				List<Callable<EntityManagerFactory>> calls = new ArrayList<Callable<EntityManagerFactory>>();
+				for ( int i = 0; i < threadCount; i++ ) {
+					calls.add( new Callable<EntityManagerFactory>() {
+						public EntityManagerFactory call() throws Exception {
+							start.await();
+							EntityManager em = holder.getEntityManagerFactory().createEntityManager();
+							try {
+								return em.getEntityManagerFactory();
+							}
+							finally {
+								em.close();
+							}
+						}
+					} );
+				}
+				long begin = System.nanoTime();
+				Set<EntityManagerFactory> factories = Collections.newSetFromMap( new IdentityHashMap<EntityManagerFactory, Boolean>() );
+				int failures = 0;
+				for ( Future<EntityManagerFactory> result : executor.invokeAll( calls ) ) {
+					try {
+						factories.add( result.get() );
+					}
+					catch (ExecutionException e) {
+						failures++;
+						e.getCause().printStackTrace();
+					}
+				}
+				System.out.println( String.format( "round %3d: %d threads, %d factories, %d failures, %6.2f ms",
+						round, threadCount, factories.size(), failures, ( System.nanoTime() - begin ) / 1e6 ) );
+				holder.close();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return null;
+	}
+
+}
@@ -23,6 +23,7 @@ package org.hibernate.osgitest.entity;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 /**
  * @author Brett Meyer
@@ -35,6 +36,9 @@ public class DataPoint {
 	
 	private String name;
 
+	@Version
+	private long version;
+
 	public long getId() {
 		return id;
 	}
@@ -50,4 +54,12 @@ public class DataPoint {
 	public void setName(String name) {
 		this.name = name;
 	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
 }
@@ -20,6 +20,8 @@
  */
 package org.hibernate.osgitest;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import org.hibernate.osgitest.entity.DataPoint;
@@ -31,8 +33,32 @@ public interface DataPointService {
 
 	public void add(DataPoint dp);
 
+	/**
+	 * adds many data points in one transaction
+	 */
+	public void addAll(List<DataPoint> dps);
+
 	public void update(DataPoint dp);
 
+	/**
+	 * renames without loading the data point first, and increments its version
+	 *
+	 * @return false if there is no data point with the id
+	 */
+	public boolean updateName(long id, String name);
+
+	/**
+	 * renames if the data point still has the given version, and increments it
+	 *
+	 * @throws org.hibernate.StaleObjectStateException if the data point was changed or deleted in between
+	 */
+	public void updateName(long id, long version, String name);
+
+	/**
+	 * renames while holding a database lock on the data point, so concurrent renames wait instead of failing
+	 */
+	public void updateNameLocked(long id, String name);
+
 	public DataPoint get(long id);
 
 	public DataPoint load(long id);
@@ -40,4 +66,53 @@ public interface DataPointService {
 	public List<DataPoint> getAll();
 
 	public void deleteAll();
+
+	/**
+	 * deletes all data points in chunks of ascending ids, committing every chunk on its own, so no lock
+	 * and no undo log lives longer than one chunk. Data points added after the delete started are kept.
+	 * Interrupting the thread cancels the delete after the current chunk.
+	 *
+	 * @param chunkSize the width of the id range of a chunk, and so the most rows a chunk deletes, at least 1
+	 * @param maxRowsPerSecond deletes no faster than this, unlimited if 0
+	 * @param progress told about every chunk, may be null
+	 * @return the number of deleted data points
+	 * @throws IllegalArgumentException if chunkSize is less than 1
+	 */
+	public long deleteAll(int chunkSize, double maxRowsPerSecond, DeleteProgress progress);
+
+	/**
+	 * writes all data points to a file, scrolling through them without keeping them in memory. The file
+	 * starts with a marker, followed by one record per data point: its length, the id, the version and
+	 * the name as length-prefixed UTF-8, -1 for none.
+	 *
+	 * @return the number of exported data points
+	 */
+	public long exportTo(File file) throws IOException;
+
+	/**
+	 * inserts the data points of a file written by {@link #exportTo(File)}, with their ids and versions,
+	 * in JDBC batches of the given size. The table should not contain any of them yet, and the id
+	 * sequence is not moved past the imported ids.
+	 *
+	 * @return the number of imported data points
+	 */
+	public long importFrom(File file, int batchSize) throws IOException;
+
+	/**
+	 * adds the data points of a CSV file with a header line and a name column, for initial loads.
+	 * On H2 the file is read by the database, with one INSERT ... SELECT FROM CSVREAD, without an entity
+	 * per row. Other databases, or any with useInserts, get batched JDBC inserts, without an entity per row either.
+	 * Data points and query results cached in the second-level cache are evicted afterwards.
+	 *
+	 * @return the number of added data points
+	 */
+	public long bulkLoad(File csv, boolean useInserts) throws IOException;
+
+	public interface DeleteProgress {
+
+		/**
+		 * @return false to cancel the delete
+		 */
+		boolean chunkDeleted(long deleted, long lastId, long maxId);
+	}
 }
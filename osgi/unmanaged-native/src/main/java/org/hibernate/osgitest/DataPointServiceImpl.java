@@ -20,11 +20,36 @@
  */
 package org.hibernate.osgitest;
 
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.hibernate.Hibernate;
+import org.hibernate.JDBCException;
+import org.hibernate.LockOptions;
+import org.hibernate.ObjectNotFoundException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.StatelessSession;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.osgitest.entity.DataPoint;
 
 /**
@@ -32,24 +57,137 @@ import org.hibernate.osgitest.entity.DataPoint;
  */
 public class DataPointServiceImpl implements DataPointService {
 
+	private static final int SNAPSHOT_MARKER = 0x44503031; // DP01
+	private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+	private static final int SNAPSHOT_COMMIT_INTERVAL = 10000;
+	// the id, the version and the name length
+	private static final int SNAPSHOT_MIN_RECORD_LENGTH = 8 + 8 + 4;
+	private static final int BULK_LOAD_BATCH_SIZE = 100;
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+	private final SessionFactory sessionFactory;
+
+	/**
+	 * uses the SessionFactory service, through HibernateUtil
+	 */
+	public DataPointServiceImpl() {
+		this( null );
+	}
+
+	/**
+	 * uses the given SessionFactory, e.g. outside of an OSGi container
+	 */
+	public DataPointServiceImpl(SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
 	public void add(DataPoint dp) {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		s.persist( dp );
 		s.getTransaction().commit();
 		s.close();
 	}
 
+	public void addAll(List<DataPoint> dps) {
+		Session s = openSession();
+		try {
+			s.getTransaction().begin();
+			for ( int i = 0; i < dps.size(); i++ ) {
+				s.persist( dps.get( i ) );
+				if ( ( i + 1 ) % 50 == 0 ) {
+					s.flush();
+					s.clear();
+				}
+			}
+			s.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( s );
+			throw e;
+		}
+		finally {
+			s.close();
+		}
+	}
+
 	public void update(DataPoint dp) {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		s.update( dp );
 		s.getTransaction().commit();
 		s.close();
 	}
 
+	public boolean updateName(long id, String name) {
+		Session s = openSession();
+		try {
+			s.getTransaction().begin();
+			// "versioned" makes the bulk update increment the version, like an update of the loaded entity would
+			int updated = s.createQuery( "update versioned DataPoint set name = :name where id = :id" )
+					.setParameter( "name", name )
+					.setParameter( "id", id )
+					.executeUpdate();
+			s.getTransaction().commit();
+			return updated == 1;
+		}
+		catch (RuntimeException e) {
+			rollback( s );
+			throw e;
+		}
+		finally {
+			s.close();
+		}
+	}
+
+	public void updateName(long id, long version, String name) {
+		Session s = openSession();
+		int updated;
+		try {
+			s.getTransaction().begin();
+			updated = s.createQuery(
+					"update DataPoint set name = :name, version = version + 1 where id = :id and version = :version" )
+					.setParameter( "name", name )
+					.setParameter( "id", id )
+					.setParameter( "version", version )
+					.executeUpdate();
+			s.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( s );
+			throw e;
+		}
+		finally {
+			s.close();
+		}
+		if ( updated == 0 ) {
+			throw new StaleObjectStateException( DataPoint.class.getName(), id );
+		}
+	}
+
+	public void updateNameLocked(long id, String name) {
+		Session s = openSession();
+		try {
+			s.getTransaction().begin();
+			// select ... for update
+			DataPoint dp = (DataPoint) s.get( DataPoint.class, id, LockOptions.UPGRADE );
+			if ( dp == null ) {
+				throw new ObjectNotFoundException( id, DataPoint.class.getName() );
+			}
+			dp.setName( name );
+			s.getTransaction().commit();
+		}
+		catch (RuntimeException e) {
+			rollback( s );
+			throw e;
+		}
+		finally {
+			s.close();
+		}
+	}
+
 	public DataPoint get(long id) {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		DataPoint dp = (DataPoint) s.createCriteria( DataPoint.class ).add(
 				Restrictions.eq( "id", id ) ).uniqueResult();
@@ -60,7 +198,7 @@ public class DataPointServiceImpl implements DataPointService {
 
 	// Test lazy loading (mainly to make sure the proxy classes work in OSGi)
 	public DataPoint load(long id) {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		DataPoint dp = (DataPoint) s.load( DataPoint.class, new Long(id) );
 		// initialize
@@ -71,7 +209,7 @@ public class DataPointServiceImpl implements DataPointService {
 	}
 
 	public List<DataPoint> getAll() {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		List list = s.createQuery( "from DataPoint" ).list();
 		s.getTransaction().commit();
@@ -80,11 +218,372 @@ public class DataPointServiceImpl implements DataPointService {
 	}
 
 	public void deleteAll() {
-		Session s = HibernateUtil.getSession();
+		Session s = openSession();
 		s.getTransaction().begin();
 		s.createQuery( "delete from DataPoint" ).executeUpdate();
 		s.getTransaction().commit();
 		s.close();
 	}
 
+	public long deleteAll(int chunkSize, double maxRowsPerSecond, DeleteProgress progress) {
+		if ( chunkSize < 1 ) {
+			throw new IllegalArgumentException( "The chunk size has to be at least 1, not " + chunkSize );
+		}
+		Object[] range;
+		Session s = openSession();
+		try {
+			range = (Object[]) s.createQuery( "select min(id), max(id) from DataPoint" ).uniqueResult();
+		}
+		finally {
+			s.close();
+		}
+		if ( range[0] == null ) {
+			return 0;
+		}
+		long maxId = (Long) range[1];
+
+		long deleted = 0;
+		long start = System.nanoTime();
+		for ( long from = (Long) range[0]; from <= maxId; from += chunkSize ) {
+			if ( Thread.currentThread().isInterrupted() ) {
+				break;
+			}
+			long to = Math.min( from + chunkSize - 1, maxId );
+			deleted += deleteChunk( from, to );
+
+			if ( progress != null && !progress.chunkDeleted( deleted, to, maxId ) ) {
+				break;
+			}
+			if ( maxRowsPerSecond > 0 ) {
+				// wait until the deleted rows are within the rate
+				long aheadNanos = (long) ( deleted / maxRowsPerSecond * 1000000000L ) - ( System.nanoTime() - start );
+				if ( aheadNanos > 0 ) {
+					try {
+						Thread.sleep( aheadNanos / 1000000, (int) ( aheadNanos % 1000000 ) );
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+		}
+		return deleted;
+	}
+
+	private int deleteChunk(long from, long to) {
+		Session s = openSession();
+		try {
+			s.getTransaction().begin();
+			int deleted = s.createQuery( "delete from DataPoint where id between :from and :to" )
+					.setParameter( "from", from )
+					.setParameter( "to", to )
+					.executeUpdate();
+			s.getTransaction().commit();
+			return deleted;
+		}
+		catch (RuntimeException e) {
+			rollback( s );
+			throw e;
+		}
+		finally {
+			s.close();
+		}
+	}
+
+	public long exportTo(File file) throws IOException {
+		StatelessSession s = openStatelessSession();
+		FileChannel channel = new FileOutputStream( file ).getChannel();
+		ScrollableResults rows = null;
+		try {
+			rows = s.createQuery( "select dp.id, dp.version, dp.name from DataPoint dp order by dp.id" )
+					.setFetchSize( 1000 )
+					.scroll( ScrollMode.FORWARD_ONLY );
+			// one buffer for the whole export
+			ByteBuffer buffer = ByteBuffer.allocateDirect( SNAPSHOT_BUFFER_SIZE );
+			buffer.putInt( SNAPSHOT_MARKER );
+			long count = 0;
+			while ( rows.next() ) {
+				String name = (String) rows.get( 2 );
+				byte[] bytes = name == null ? null : name.getBytes( UTF_8 );
+				// names are limited by their column, so a record always fits into the buffer
+				int length = 8 + 8 + 4 + ( bytes == null ? 0 : bytes.length );
+				if ( buffer.remaining() < 4 + length ) {
+					write( channel, buffer );
+				}
+				buffer.putInt( length ).putLong( (Long) rows.get( 0 ) ).putLong( (Long) rows.get( 1 ) );
+				if ( bytes == null ) {
+					buffer.putInt( -1 );
+				}
+				else {
+					buffer.putInt( bytes.length ).put( bytes );
+				}
+				count++;
+			}
+			write( channel, buffer );
+			return count;
+		}
+		finally {
+			if ( rows != null ) {
+				rows.close();
+			}
+			s.close();
+			channel.close();
+		}
+	}
+
+	public long importFrom(File file, int batchSize) throws IOException {
+		FileChannel channel = new FileInputStream( file ).getChannel();
+		StatelessSession s = openStatelessSession();
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect( SNAPSHOT_BUFFER_SIZE );
+			channel.read( buffer );
+			buffer.flip();
+			if ( buffer.remaining() < 4 || buffer.getInt() != SNAPSHOT_MARKER ) {
+				throw new IOException( "Not a data point snapshot: " + file );
+			}
+
+			long count = 0;
+			boolean more = true;
+			while ( more ) {
+				// a transaction per chunk, the connection may be released after each commit
+				s.getTransaction().begin();
+				try {
+					PreparedStatement insert = s.connection().prepareStatement(
+							"insert into DataPoint (id, version, name) values (?, ?, ?)" );
+					try {
+						int inChunk = 0;
+						while ( inChunk < SNAPSHOT_COMMIT_INTERVAL && ( more = nextRecord( channel, buffer, file ) ) ) {
+							int length = buffer.getInt();
+							int end = buffer.position() + length;
+							insert.setLong( 1, buffer.getLong() );
+							insert.setLong( 2, buffer.getLong() );
+							int nameLength = buffer.getInt();
+							if ( nameLength < -1 || buffer.position() + Math.max( nameLength, 0 ) != end ) {
+								throw corrupt( file, channel, buffer, "name length " + nameLength );
+							}
+							if ( nameLength < 0 ) {
+								insert.setNull( 3, Types.VARCHAR );
+							}
+							else {
+								byte[] bytes = new byte[nameLength];
+								buffer.get( bytes );
+								insert.setString( 3, new String( bytes, UTF_8 ) );
+							}
+							insert.addBatch();
+							if ( ++inChunk % batchSize == 0 ) {
+								insert.executeBatch();
+							}
+						}
+						insert.executeBatch();
+						count += inChunk;
+					}
+					finally {
+						insert.close();
+					}
+					s.getTransaction().commit();
+				}
+				catch (SQLException e) {
+					s.getTransaction().rollback();
+					throw new JDBCException( "Could not import data points from " + file, e );
+				}
+				catch (RuntimeException e) {
+					s.getTransaction().rollback();
+					throw e;
+				}
+				catch (IOException e) {
+					s.getTransaction().rollback();
+					throw e;
+				}
+			}
+			return count;
+		}
+		finally {
+			s.close();
+			channel.close();
+		}
+	}
+
+	public long bulkLoad(File csv, boolean useInserts) throws IOException {
+		SessionFactoryImplementor sf = (SessionFactoryImplementor) sessionFactory();
+		long loaded = 0;
+		if ( !useInserts && sf.getDialect() instanceof H2Dialect ) {
+			Session s = sf.openSession();
+			try {
+				s.getTransaction().begin();
+				// CSVREAD needs the file name when the statement is prepared, it cannot be a parameter.
+				// The ids come from the identity column.
+				loaded = s.createSQLQuery( "insert into DataPoint (version, name) select 0, name from csvread('"
+						+ csv.getAbsolutePath().replace( "'", "''" ) + "', null, 'charset=UTF-8')" ).executeUpdate();
+				s.getTransaction().commit();
+			}
+			catch (RuntimeException e) {
+				rollback( s );
+				throw e;
+			}
+			finally {
+				s.close();
+			}
+		}
+		else {
+			BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( csv ), UTF_8 ) );
+			StatelessSession s = openStatelessSession();
+			try {
+				s.getTransaction().begin();
+				// JDBC batches, like importFrom: the id is an identity column, so StatelessSession.insert()
+				// would execute each insert on its own to read the generated id back
+				PreparedStatement insert = s.connection().prepareStatement(
+						"insert into DataPoint (version, name) values (0, ?)" );
+				try {
+					// the header
+					readCsvRecord( reader );
+					for ( List<String> record = readCsvRecord( reader ); record != null; record = readCsvRecord( reader ) ) {
+						if ( record.get( 0 ) == null ) {
+							insert.setNull( 1, Types.VARCHAR );
+						}
+						else {
+							insert.setString( 1, record.get( 0 ) );
+						}
+						insert.addBatch();
+						if ( ++loaded % BULK_LOAD_BATCH_SIZE == 0 ) {
+							insert.executeBatch();
+						}
+					}
+					insert.executeBatch();
+				}
+				finally {
+					insert.close();
+				}
+				s.getTransaction().commit();
+			}
+			catch (SQLException e) {
+				s.getTransaction().rollback();
+				throw new JDBCException( "Could not load data points from " + csv, e );
+			}
+			catch (RuntimeException e) {
+				s.getTransaction().rollback();
+				throw e;
+			}
+			catch (IOException e) {
+				s.getTransaction().rollback();
+				throw e;
+			}
+			finally {
+				s.close();
+				reader.close();
+			}
+		}
+		// the cache did not see the inserts
+		sf.getCache().evictEntityRegion( DataPoint.class );
+		sf.getCache().evictQueryRegions();
+		return loaded;
+	}
+
+	private SessionFactory sessionFactory() {
+		return sessionFactory == null ? HibernateUtil.getSessionFactory() : sessionFactory;
+	}
+
+	private Session openSession() {
+		return sessionFactory().openSession();
+	}
+
+	private StatelessSession openStatelessSession() {
+		return sessionFactory().openStatelessSession();
+	}
+
+	// after a failed statement or commit, so the connection does not keep the transaction open
+	private static void rollback(Session s) {
+		if ( s.getTransaction().isActive() ) {
+			s.getTransaction().rollback();
+		}
+	}
+
+	// the fields of the next line, null at the end of the file. Like for CSVREAD, quoted fields
+	// may contain commas, line breaks and doubled quotes, and an empty field that is not quoted is null
+	private static List<String> readCsvRecord(Reader reader) throws IOException {
+		int c = reader.read();
+		if ( c < 0 ) {
+			return null;
+		}
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean inQuotes = false;
+		boolean quoted = false;
+		while ( true ) {
+			if ( inQuotes ) {
+				if ( c < 0 ) {
+					throw new EOFException( "The file ends within a quoted field" );
+				}
+				if ( c == '"' ) {
+					c = reader.read();
+					if ( c != '"' ) {
+						inQuotes = false;
+						continue;
+					}
+				}
+				field.append( (char) c );
+			}
+			else if ( c == '"' ) {
+				inQuotes = true;
+				quoted = true;
+			}
+			else if ( c == ',' || c == '\n' || c < 0 ) {
+				fields.add( field.length() == 0 && !quoted ? null : field.toString() );
+				if ( c != ',' ) {
+					return fields;
+				}
+				field.setLength( 0 );
+				quoted = false;
+			}
+			else if ( c != '\r' ) {
+				field.append( (char) c );
+			}
+			c = reader.read();
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while ( buffer.hasRemaining() ) {
+			channel.write( buffer );
+		}
+		buffer.clear();
+	}
+
+	// reads until the buffer holds the whole next record, false at the end of the file
+	private static boolean nextRecord(FileChannel channel, ByteBuffer buffer, File file) throws IOException {
+		while ( buffer.remaining() < 4 || buffer.remaining() < 4 + recordLength( channel, buffer, file ) ) {
+			buffer.compact();
+			int read = channel.read( buffer );
+			buffer.flip();
+			if ( read < 0 ) {
+				if ( buffer.hasRemaining() ) {
+					throw new EOFException( "The snapshot " + file + " ends within the record at offset "
+							+ offset( channel, buffer ) );
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// the length prefix of the next record, which has to fit into the buffer, or reading it would never end
+	private static int recordLength(FileChannel channel, ByteBuffer buffer, File file) throws IOException {
+		int length = buffer.getInt( buffer.position() );
+		if ( length < SNAPSHOT_MIN_RECORD_LENGTH || length > buffer.capacity() - 4 ) {
+			throw corrupt( file, channel, buffer, "record length " + length );
+		}
+		return length;
+	}
+
+	private static IOException corrupt(File file, FileChannel channel, ByteBuffer buffer, String what)
+			throws IOException {
+		return new IOException( "Corrupt snapshot " + file + ", " + what + " before offset " + offset( channel, buffer ) );
+	}
+
+	// the offset in the file of the buffer's position
+	private static long offset(FileChannel channel, ByteBuffer buffer) throws IOException {
+		return channel.position() - buffer.remaining();
+	}
+
 }
@@ -22,32 +22,85 @@ package org.hibernate.osgitest;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
-import org.osgi.framework.Bundle;
+import org.hibernate.StatelessSession;
 import org.osgi.framework.BundleContext;
-import org.osgi.framework.FrameworkUtil;
-import org.osgi.framework.ServiceReference;
+import org.osgi.util.tracker.ServiceTracker;
 
 /**
+ * Looks up the SessionFactory service through a ServiceTracker. The tracker is opened by the first call,
+ * under a lock, and published through a volatile field, so every later call reads the field and the
+ * service the tracker caches without locking. When the service is unregistered, e.g. because the Hibernate
+ * bundle restarts, the tracker drops it and picks up the next registration, instead of the stale one
+ * being used forever. Calls while there is no service wait for one.
+ *
  * @author Brett Meyer
  */
 
 public class HibernateUtil {
 
-	private static SessionFactory sf;
+	// how long a call waits for the SessionFactory service to be registered
+	private static final long SERVICE_TIMEOUT_MILLIS = 30000;
+
+	private static volatile BundleContext context;
+
+	private static volatile ServiceTracker<SessionFactory, SessionFactory> tracker;
 
 	public static Session getSession() {
 		return getSessionFactory().openSession();
 	}
 
-	private static SessionFactory getSessionFactory() {
-		if ( sf == null ) {
-			Bundle thisBundle = FrameworkUtil.getBundle( HibernateUtil.class );
-			// Could get this by wiring up OsgiTestBundleActivator as well.
-			BundleContext context = thisBundle.getBundleContext();
+	public static StatelessSession getStatelessSession() {
+		return getSessionFactory().openStatelessSession();
+	}
 
-			ServiceReference sr = context.getServiceReference( SessionFactory.class.getName() );
-			sf = (SessionFactory) context.getService( sr );
+	static SessionFactory getSessionFactory() {
+		ServiceTracker<SessionFactory, SessionFactory> current = tracker;
+		if ( current == null ) {
+			current = openTracker();
+		}
+		SessionFactory sf = null;
+		try {
+			// returns the cached service right away, if there is one
+			sf = current.waitForService( SERVICE_TIMEOUT_MILLIS );
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if ( sf == null ) {
+			throw new IllegalStateException( "No " + SessionFactory.class.getName() + " service registered" );
 		}
 		return sf;
 	}
+
+	private static synchronized ServiceTracker<SessionFactory, SessionFactory> openTracker() {
+		if ( tracker == null ) {
+			if ( context == null ) {
+				throw new IllegalStateException( "The unmanaged-native bundle has not been started" );
+			}
+			ServiceTracker<SessionFactory, SessionFactory> opened =
+					new ServiceTracker<SessionFactory, SessionFactory>( context, SessionFactory.class, null );
+			opened.open();
+			// published only once it tracks
+			tracker = opened;
+		}
+		return tracker;
+	}
+
+	/**
+	 * called by OsgiTestBundleActivator when this bundle starts, the tracker is opened by the first call
+	 */
+	static void start(BundleContext bundleContext) {
+		context = bundleContext;
+	}
+
+	/**
+	 * stops tracking, called by OsgiTestBundleActivator when this bundle stops. The next call opens a new
+	 * tracker, like the first call after the bundle started. Sessions opened before are not affected.
+	 */
+	public static synchronized void close() {
+		if ( tracker != null ) {
+			tracker.close();
+			tracker = null;
+		}
+	}
 }
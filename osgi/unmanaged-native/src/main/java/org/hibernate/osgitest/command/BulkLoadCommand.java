@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.io.File;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.osgitest.DataPointService;
+
+/**
+ * Adds the data points of a CSV file with a header line and a name column. With --compare the file is
+ * loaded by each path in turn and both are timed. As ALL data points are deleted before each load,
+ * --compare also needs --delete-all.
+ */
+@Command(scope = "dp", name = "bulkLoad")
+public class BulkLoadCommand implements Action {
+	@Argument(index = 0, name = "File", required = true, description = "CSV file with a name column", multiValued = false)
+	String file;
+
+	@Option(name = "-i", aliases = "--inserts", description = "Insert with batched JDBC inserts, also on H2", required = false, multiValued = false)
+	boolean useInserts;
+
+	@Option(name = "-c", aliases = "--compare", description = "Load with both paths and compare them, deleting all data points before each load", required = false, multiValued = false)
+	boolean compare;
+
+	@Option(name = "-d", aliases = "--delete-all", description = "Confirm that --compare may delete all data points", required = false, multiValued = false)
+	boolean deleteAll;
+
+	private DataPointService dpService;
+
+	public void setDpService(DataPointService dpService) {
+		this.dpService = dpService;
+	}
+
+	public Object execute(CommandSession session) throws Exception {
+		if ( compare ) {
+			if ( !deleteAll ) {
+				System.out.println( "--compare deletes all data points before each load, add --delete-all to go ahead" );
+				return null;
+			}
+			dpService.deleteAll();
+			load( false );
+			dpService.deleteAll();
+			load( true );
+		}
+		else {
+			load( useInserts );
+		}
+		return null;
+	}
+
+	private void load(boolean inserts) throws Exception {
+		long start = System.nanoTime();
+		long rows = dpService.bulkLoad( new File( file ), inserts );
+		long millis = Math.max( 1, ( System.nanoTime() - start ) / 1000000 );
+		System.out.println( String.format( "Loaded %d data points %s in %d ms, %.0f rows/s",
+				rows, inserts ? "with inserts" : "in bulk", millis, rows * 1000d / millis ) );
+	}
+
+}
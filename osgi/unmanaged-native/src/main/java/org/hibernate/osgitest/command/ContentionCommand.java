@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.HibernateException;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.osgitest.DataPointService;
+import org.hibernate.osgitest.entity.DataPoint;
+
+/**
+ * Lets many threads rename a few data points at the same time, once with optimistic locking, where a writer
+ * that lost the race reads the data point again and retries (up to MaxRetries times, after which the update
+ * counts as failed), and once with pessimistic locking, where the writers queue up on a row lock.
+ */
+@Command(scope = "dp", name = "contention")
+public class ContentionCommand implements Action {
+	@Argument(index = 0, name = "Threads", required = false, description = "Concurrent writers", multiValued = false)
+	String threads = "16";
+
+	@Argument(index = 1, name = "HotIds", required = false, description = "Data points all writers update", multiValued = false)
+	String hotIds = "4";
+
+	@Argument(index = 2, name = "Updates", required = false, description = "Updates per writer", multiValued = false)
+	String updates = "100";
+
+	@Argument(index = 3, name = "MaxRetries", required = false, description = "Optimistic retries before an update fails", multiValued = false)
+	String maxRetries = "20";
+
+	private DataPointService dpService;
+
+	public void setDpService(DataPointService dpService) {
+		this.dpService = dpService;
+	}
+
+	public Object execute(CommandSession session) throws Exception {
+		final List<Long> ids = new ArrayList<Long>();
+		for ( int i = 0; i < Integer.parseInt( hotIds ); i++ ) {
+			DataPoint dp = new DataPoint();
+			dp.setName( "hot " + i );
+			dpService.add( dp );
+			ids.add( dp.getId() );
+		}
+
+		final int retryLimit = Integer.parseInt( maxRetries );
+		run( "optimistic", ids, new Writer() {
+			public void rename(long id, String name, AtomicLong retries) {
+				renameOptimistically( dpService, id, name, retryLimit, retries );
+			}
+		} );
+		run( "pessimistic", ids, new Writer() {
+			public void rename(long id, String name, AtomicLong retries) {
+				dpService.updateNameLocked( id, name );
+			}
+		} );
+		return null;
+	}
+
+	/**
+	 * renames with the version the data point was read with, and reads it again after every lost race
+	 *
+	 * @throws StaleObjectStateException if the rename still lost after maxRetries retries
+	 */
+	static void renameOptimistically(DataPointService dpService, long id, String name, int maxRetries,
+			AtomicLong retries) {
+		for ( int attempt = 0; ; attempt++ ) {
+			DataPoint dp = dpService.get( id );
+			try {
+				dpService.updateName( id, dp.getVersion(), name );
+				return;
+			}
+			catch (StaleObjectStateException e) {
+				if ( attempt == maxRetries ) {
+					// given up, counted as failed by the caller
+					throw e;
+				}
+				retries.incrementAndGet();
+			}
+		}
+	}
+
+	private interface Writer {
+		void rename(long id, String name, AtomicLong retries);
+	}
+
+	private void run(String locking, final List<Long> ids, final Writer writer) throws Exception {
+		final int updatesPerThread = Integer.parseInt( updates );
+		final AtomicLong retries = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+		int threadCount = Integer.parseInt( threads );
+		ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> writers = new ArrayList<Future<?>>();
+			for ( int t = 0; t < threadCount; t++ ) {
+				final int thread = t;
+				writers.add( executor.submit( new Callable<Void>() {
+					public Void call() {
+						for ( int i = 0; i < updatesPerThread; i++ ) {
+							try {
+								writer.rename( ids.get( ( thread + i ) % ids.size() ), "writer " + thread + " #" + i, retries );
+							}
+							catch (HibernateException e) {
+								// e.g. a lock timeout
+								failures.incrementAndGet();
+							}
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<?> future : writers ) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		long millis = ( System.nanoTime() - start ) / 1000000;
+		System.out.println( String.format( "%-11s %6d updates by %3d threads on %3d data points: %6d ms, %6d retries, %6d failed",
+				locking, threadCount * updatesPerThread, threadCount, ids.size(), millis, retries.get(), failures.get() ) );
+	}
+
+}
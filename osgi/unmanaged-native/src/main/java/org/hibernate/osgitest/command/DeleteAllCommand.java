@@ -18,11 +18,18 @@ package org.hibernate.osgitest.command;
 
 import org.apache.felix.gogo.commands.Action;
 import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.gogo.commands.Option;
 import org.apache.felix.service.command.CommandSession;
 import org.hibernate.osgitest.DataPointService;
 
 @Command(scope = "dp", name = "deleteAll")
 public class DeleteAllCommand implements Action {
+    @Option(name = "-c", aliases = "--chunk-size", description = "Delete in chunks of this many ids, each in its own transaction", required = false, multiValued = false)
+    int chunkSize;
+
+    @Option(name = "-r", aliases = "--rate", description = "Delete no more than this many data points per second, with -c", required = false, multiValued = false)
+    double maxRowsPerSecond;
+
 private DataPointService dpService;
     
     public void setDpService(DataPointService dpService) {
@@ -30,7 +37,20 @@ private DataPointService dpService;
     }
 
     public Object execute(CommandSession session) throws Exception {
-    	dpService.deleteAll();
+        if ( chunkSize <= 0 ) {
+            dpService.deleteAll();
+            return null;
+        }
+        // Ctrl-C interrupts the command, which cancels the delete after the current chunk
+        long deleted = dpService.deleteAll( chunkSize, maxRowsPerSecond, new DataPointService.DeleteProgress() {
+            public boolean chunkDeleted(long deletedSoFar, long lastId, long maxId) {
+                System.out.println( "Deleted " + deletedSoFar + " data points, up to id " + lastId + " of " + maxId );
+                return true;
+            }
+        } );
+        if ( Thread.interrupted() ) {
+            System.out.println( "Cancelled after deleting " + deleted + " data points" );
+        }
         return null;
     }
 
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.osgitest.DataPointService;
+import org.hibernate.osgitest.entity.DataPoint;
+
+/**
+ * Measures how long dp:get takes while all data points are deleted, once with a single delete statement
+ * and once in chunks. A single statement holds its locks until the very end, the chunked delete should
+ * keep the latency of concurrent reads close to that of an idle database.
+ */
+@Command(scope = "dp", name = "deleteLatency")
+public class DeleteLatencyCommand implements Action {
+	@Argument(index = 0, name = "Rows", required = false, description = "Data points to delete", multiValued = false)
+	String rows = "100000";
+
+	@Argument(index = 1, name = "ChunkSize", required = false, description = "Ids per chunk", multiValued = false)
+	String chunkSize = "1000";
+
+	private DataPointService dpService;
+
+	public void setDpService(DataPointService dpService) {
+		this.dpService = dpService;
+	}
+
+	public Object execute(CommandSession session) throws Exception {
+		final int chunk = Integer.parseInt( chunkSize );
+		if ( chunk < 1 ) {
+			throw new IllegalArgumentException( "ChunkSize has to be at least 1, not " + chunk );
+		}
+
+		measure( "idle", new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep( 1000 );
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} );
+		measure( "single delete", new Runnable() {
+			public void run() {
+				dpService.deleteAll();
+			}
+		} );
+		measure( "chunked delete", new Runnable() {
+			public void run() {
+				dpService.deleteAll( chunk, 0, null );
+			}
+		} );
+		return null;
+	}
+
+	private void measure(String label, Runnable delete) throws InterruptedException {
+		int rowCount = Integer.parseInt( rows );
+		dpService.deleteAll();
+		final List<Long> ids = new ArrayList<Long>();
+		for ( int from = 0; from < rowCount; from += 10000 ) {
+			List<DataPoint> dps = new ArrayList<DataPoint>();
+			for ( int i = from; i < Math.min( from + 10000, rowCount ); i++ ) {
+				DataPoint dp = new DataPoint();
+				dp.setName( "data point " + i );
+				dps.add( dp );
+			}
+			dpService.addAll( dps );
+			for ( DataPoint dp : dps ) {
+				ids.add( dp.getId() );
+			}
+		}
+
+		// reads random data points until the delete is done
+		final AtomicBoolean deleting = new AtomicBoolean( true );
+		final List<Long> latencies = Collections.synchronizedList( new ArrayList<Long>() );
+		Thread reader = new Thread( "dp-reader" ) {
+			public void run() {
+				Random random = new Random();
+				while ( deleting.get() ) {
+					long start = System.nanoTime();
+					dpService.get( ids.get( random.nextInt( ids.size() ) ) );
+					latencies.add( System.nanoTime() - start );
+				}
+			}
+		};
+		reader.start();
+		long start = System.nanoTime();
+		try {
+			delete.run();
+		}
+		finally {
+			deleting.set( false );
+			reader.join();
+		}
+		long millis = ( System.nanoTime() - start ) / 1000000;
+
+		List<Long> sorted = new ArrayList<Long>( latencies );
+		Collections.sort( sorted );
+		if ( sorted.isEmpty() ) {
+			sorted.add( 0L );
+		}
+		System.out.println( String.format( "%-15s %7d ms, %6d gets, get latency p50 %6.2f ms, p99 %6.2f ms, max %6.2f ms",
+				label, millis, latencies.size(),
+				percentile( sorted, 0.5 ), percentile( sorted, 0.99 ), sorted.get( sorted.size() - 1 ) / 1e6 ) );
+	}
+
+	private static double percentile(List<Long> sorted, double fraction) {
+		return sorted.get( (int) ( ( sorted.size() - 1 ) * fraction ) ) / 1e6;
+	}
+
+}
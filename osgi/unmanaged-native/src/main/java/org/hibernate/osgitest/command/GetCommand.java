@@ -36,7 +36,7 @@ public class GetCommand implements Action {
 
 	public Object execute(CommandSession session) throws Exception {
 		DataPoint dp = dpService.get( Long.valueOf( id ) );
-		System.out.println( dp.getId() + ", " + dp.getName() );
+		System.out.println( dp.getId() + ", " + dp.getName() + ", version " + dp.getVersion() );
 		return null;
 	}
 
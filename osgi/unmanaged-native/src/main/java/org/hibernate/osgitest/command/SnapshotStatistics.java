@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Reports the rows per second and the peak heap usage of dp:export and dp:import.
+ */
+class SnapshotStatistics {
+
+	private final long start;
+
+	SnapshotStatistics() {
+		System.gc();
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			if ( pool.getType() == MemoryType.HEAP ) {
+				pool.resetPeakUsage();
+			}
+		}
+		start = System.nanoTime();
+	}
+
+	void print(String action, long rows) {
+		long millis = Math.max( 1, ( System.nanoTime() - start ) / 1000000 );
+		// the sum of the pools' peaks, which were not necessarily reached at the same time
+		long peakHeap = 0;
+		for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() ) {
+			if ( pool.getType() == MemoryType.HEAP ) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println( String.format( "%s %d data points in %d ms, %.0f rows/s, peak heap %d MB",
+				action, rows, millis, rows * 1000d / millis, peakHeap >> 20 ) );
+	}
+
+}
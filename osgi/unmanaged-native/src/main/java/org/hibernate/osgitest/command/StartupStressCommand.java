@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.felix.gogo.commands.Action;
+import org.apache.felix.gogo.commands.Argument;
+import org.apache.felix.gogo.commands.Command;
+import org.apache.felix.service.command.CommandSession;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.osgitest.HibernateUtil;
+
+/**
+ * Closes the tracker of HibernateUtil and lets many threads make the first call at the same moment,
+ * like requests arriving while the bundle starts, for some rounds. Reports how many distinct factories
+ * the threads of a round got, and how many calls failed. The SessionFactory service stays the same, so every
+ * round should report 1 factory.
+ */
+@Command(scope = "dp", name = "startupStress")
+public class StartupStressCommand implements Action {
+	@Argument(index = 0, name = "Threads", required = false, description = "Threads calling at once", multiValued = false)
+	String threads = "32";
+
+	@Argument(index = 1, name = "Rounds", required = false, description = "Times the tracker is closed", multiValued = false)
+	String rounds = "20";
+
+	public Object execute(CommandSession session) throws Exception {
+		final int threadCount = Integer.parseInt( threads );
+		int roundCount = Integer.parseInt( rounds );
+		ExecutorService executor = Executors.newFixedThreadPool( threadCount );
+		try {
+			for ( int round = 1; round <= roundCount; round++ ) {
+				HibernateUtil.close();
+				// releases all threads at the same moment
+				final CyclicBarrier start = new CyclicBarrier( threadCount );
+				List<Callable<SessionFactory>> calls = new ArrayList<Callable<SessionFactory>>();
+				for ( int i = 0; i < threadCount; i++ ) {
+					calls.add( new Callable<SessionFactory>() {
+						public SessionFactory call() throws Exception {
+							start.await();
+							Session s = HibernateUtil.getSession();
+							try {
+								return s.getSessionFactory();
+							}
+							finally {
+								s.close();
+							}
+						}
+					} );
+				}
+				long begin = System.nanoTime();
+				Set<SessionFactory> factories = Collections.newSetFromMap( new IdentityHashMap<SessionFactory, Boolean>() );
+				int failures = 0;
+				for ( Future<SessionFactory> result : executor.invokeAll( calls ) ) {
+					try {
+						factories.add( result.get() );
+					}
+					catch (ExecutionException e) {
+						failures++;
+						e.getCause().printStackTrace();
+					}
+				}
+				System.out.println( String.format( "round %3d: %d threads, %d factories, %d failures, %6.2f ms",
+						round, threadCount, factories.size(), failures, ( System.nanoTime() - begin ) / 1e6 ) );
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return null;
+	}
+
+}
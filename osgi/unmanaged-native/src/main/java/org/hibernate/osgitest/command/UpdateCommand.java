@@ -21,7 +21,6 @@ import org.apache.felix.gogo.commands.Argument;
 import org.apache.felix.gogo.commands.Command;
 import org.apache.felix.service.command.CommandSession;
 import org.hibernate.osgitest.DataPointService;
-import org.hibernate.osgitest.entity.DataPoint;
 
 @Command(scope = "dp", name = "update")
 public class UpdateCommand implements Action {
@@ -30,6 +29,9 @@ public class UpdateCommand implements Action {
     
     @Argument(index=1, name="Name", required=true, description="Name", multiValued=false)
     String name;
+
+    @Argument(index=2, name="Version", required=false, description="Version the data point is expected to have", multiValued=false)
+    String version;
     
     private DataPointService dpService;
     
@@ -38,9 +40,15 @@ public class UpdateCommand implements Action {
     }
 
     public Object execute(CommandSession session) throws Exception {
-        DataPoint dp = dpService.get( Long.valueOf( id ) );
-        dp.setName( name );
-        dpService.update( dp );
+        // a single update statement, instead of reading the data point and merging it back
+        if ( version == null ) {
+            if ( !dpService.updateName( Long.valueOf( id ), name ) ) {
+                System.out.println( "No data point " + id );
+            }
+        }
+        else {
+            dpService.updateName( Long.valueOf( id ), Long.valueOf( version ), name );
+        }
         return null;
     }
 
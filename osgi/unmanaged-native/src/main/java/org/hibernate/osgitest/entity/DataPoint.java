@@ -25,6 +25,7 @@ import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Version;
 
 /**
  * @author Brett Meyer
@@ -37,6 +38,9 @@ public class DataPoint implements Serializable {
 	
 	private String name;
 
+	@Version
+	private long version;
+
 	public long getId() {
 		return id;
 	}
@@ -52,4 +56,12 @@ public class DataPoint implements Serializable {
 	public void setName(String name) {
 		this.name = name;
 	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
 }
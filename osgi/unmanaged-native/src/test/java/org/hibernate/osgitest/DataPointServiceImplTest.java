@@ -0,0 +1,337 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.osgitest;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.osgitest.entity.DataPoint;
+
+/**
+ * Runs the service against H2 with a SessionFactory of its own, without an OSGi container.
+ */
+public class DataPointServiceImplTest extends TestCase {
+
+	// a database of its own, where writers wait for row locks longer than H2's default of a second
+	private static final String URL = "jdbc:h2:mem:datapoints;DB_CLOSE_DELAY=-1;MVCC=TRUE;LOCK_TIMEOUT=10000";
+
+	private SessionFactory sessionFactory;
+	private DataPointService dpService;
+
+	@Override
+	protected void setUp() throws Exception {
+		sessionFactory = new Configuration()
+				.configure()
+				.setProperty( "hibernate.connection.url", URL )
+				.buildSessionFactory();
+		dpService = new DataPointServiceImpl( sessionFactory );
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if ( sessionFactory != null ) {
+			sessionFactory.close();
+		}
+	}
+
+	public void testUpdateNameIncrementsVersion() {
+		DataPoint dp = add( "original" );
+
+		assertTrue( dpService.updateName( dp.getId(), "renamed" ) );
+		DataPoint renamed = dpService.get( dp.getId() );
+		assertEquals( "renamed", renamed.getName() );
+		assertEquals( dp.getVersion() + 1, renamed.getVersion() );
+
+		assertFalse( dpService.updateName( dp.getId() + 1, "missing" ) );
+	}
+
+	public void testUpdateNameRejectsStaleVersion() {
+		DataPoint dp = add( "original" );
+		long version = dp.getVersion();
+
+		dpService.updateName( dp.getId(), version, "first" );
+		try {
+			// the version the second writer read is gone
+			dpService.updateName( dp.getId(), version, "second" );
+			fail( "The rename with a stale version succeeded" );
+		}
+		catch (StaleObjectStateException expected) {
+		}
+
+		DataPoint current = dpService.get( dp.getId() );
+		assertEquals( "first", current.getName() );
+		assertEquals( version + 1, current.getVersion() );
+
+		dpService.updateName( dp.getId(), current.getVersion(), "third" );
+		assertEquals( "third", dpService.get( dp.getId() ).getName() );
+	}
+
+	public void testUpdateNameLockedSerializesWriters() throws Exception {
+		final DataPoint dp = add( "original" );
+		int writers = 8;
+		final int updatesPerWriter = 20;
+
+		ExecutorService executor = Executors.newFixedThreadPool( writers );
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for ( int w = 0; w < writers; w++ ) {
+				final int writer = w;
+				results.add( executor.submit( new Callable<Void>() {
+					public Void call() {
+						for ( int i = 0; i < updatesPerWriter; i++ ) {
+							// a writer that read the row while another one held it would fail its versioned update
+							dpService.updateNameLocked( dp.getId(), "writer " + writer + " #" + i );
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<Void> result : results ) {
+				result.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		// no update was lost
+		assertEquals( dp.getVersion() + writers * updatesPerWriter, dpService.get( dp.getId() ).getVersion() );
+	}
+
+	public void testDeleteAllInChunks() {
+		List<Long> ids = addAll( 10 );
+		long minId = ids.get( 0 );
+		long maxId = ids.get( 9 );
+		// a gap in the ids, the chunks still cover the ids from the first to the last
+		Session s = sessionFactory.openSession();
+		s.beginTransaction();
+		s.createQuery( "delete from DataPoint where id between :from and :to" )
+				.setParameter( "from", minId + 3 )
+				.setParameter( "to", minId + 5 )
+				.executeUpdate();
+		s.getTransaction().commit();
+		s.close();
+
+		final List<long[]> chunks = new ArrayList<long[]>();
+		long deleted = dpService.deleteAll( 4, 0, new DataPointService.DeleteProgress() {
+			public boolean chunkDeleted(long deletedSoFar, long lastId, long maxId) {
+				if ( chunks.isEmpty() ) {
+					// added after the delete started
+					add( "late" );
+				}
+				chunks.add( new long[] { deletedSoFar, lastId, maxId } );
+				return true;
+			}
+		} );
+
+		assertEquals( 7, deleted );
+		assertEquals( 3, chunks.size() );
+		assertChunk( chunks.get( 0 ), 3, minId + 3, maxId );
+		assertChunk( chunks.get( 1 ), 5, minId + 7, maxId );
+		assertChunk( chunks.get( 2 ), 7, maxId, maxId );
+		List<DataPoint> left = dpService.getAll();
+		assertEquals( 1, left.size() );
+		assertEquals( "late", left.get( 0 ).getName() );
+	}
+
+	public void testDeleteAllRejectsChunkSizeBelowOne() {
+		addAll( 3 );
+		for ( int chunkSize : new int[] { 0, -1 } ) {
+			try {
+				dpService.deleteAll( chunkSize, 0, null );
+				fail( "Deleting in chunks of " + chunkSize + " ids was not rejected" );
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		}
+		assertEquals( 3, dpService.getAll().size() );
+	}
+
+	public void testDeleteAllCancelledByProgress() {
+		addAll( 10 );
+
+		long deleted = dpService.deleteAll( 2, 0, new DataPointService.DeleteProgress() {
+			public boolean chunkDeleted(long deletedSoFar, long lastId, long maxId) {
+				return deletedSoFar < 4;
+			}
+		} );
+
+		assertEquals( 4, deleted );
+		assertEquals( 6, dpService.getAll().size() );
+	}
+
+	public void testDeleteAllCancelledByInterrupt() {
+		addAll( 10 );
+
+		long deleted;
+		try {
+			deleted = dpService.deleteAll( 2, 0, new DataPointService.DeleteProgress() {
+				public boolean chunkDeleted(long deletedSoFar, long lastId, long maxId) {
+					Thread.currentThread().interrupt();
+					return true;
+				}
+			} );
+		}
+		finally {
+			// clears the interrupt, which the delete keeps set for its caller
+			assertTrue( Thread.interrupted() );
+		}
+
+		assertEquals( 2, deleted );
+		assertEquals( 8, dpService.getAll().size() );
+	}
+
+	public void testDeleteAllRateLimit() {
+		addAll( 20 );
+
+		long start = System.nanoTime();
+		long deleted = dpService.deleteAll( 5, 100, null );
+		long millis = ( System.nanoTime() - start ) / 1000000;
+
+		assertEquals( 20, deleted );
+		// 20 rows at 100 per second, less a little for coarse sleep timers
+		assertTrue( "Deleted 20 data points in " + millis + " ms", millis >= 190 );
+	}
+
+	public void testSnapshotRoundTrip() throws IOException {
+		add( "first" );
+		add( null );
+		add( "third \u00e9" );
+		List<DataPoint> exported = dpService.getAll();
+		File file = tempFile();
+		assertEquals( 3, dpService.exportTo( file ) );
+		dpService.deleteAll();
+
+		assertEquals( 3, dpService.importFrom( file, 2 ) );
+
+		for ( DataPoint dp : exported ) {
+			DataPoint imported = dpService.get( dp.getId() );
+			assertEquals( dp.getName(), imported.getName() );
+			assertEquals( dp.getVersion(), imported.getVersion() );
+		}
+	}
+
+	public void testCorruptSnapshot() throws IOException {
+		addAll( 3 );
+		File file = tempFile();
+		dpService.exportTo( file );
+		dpService.deleteAll();
+		byte[] bytes = read( file );
+
+		try {
+			dpService.importFrom( write( Arrays.copyOf( bytes, bytes.length - 3 ) ), 100 );
+			fail( "Imported a truncated snapshot" );
+		}
+		catch (EOFException expected) {
+		}
+		assertEquals( 0, dpService.getAll().size() );
+
+		// the length of the first record, after the marker
+		for ( int length : new int[] { 1 << 20, -1 } ) {
+			byte[] corrupt = bytes.clone();
+			ByteBuffer.wrap( corrupt ).putInt( 4, length );
+			try {
+				dpService.importFrom( write( corrupt ), 100 );
+				fail( "Imported a snapshot with a record length of " + length );
+			}
+			catch (IOException expected) {
+				assertTrue( expected.getMessage(),
+						expected.getMessage().contains( "record length " + length + " before offset 4" ) );
+			}
+			assertEquals( 0, dpService.getAll().size() );
+		}
+	}
+
+	private static File tempFile() throws IOException {
+		File file = File.createTempFile( "datapoints", ".snapshot" );
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static byte[] read(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile( file, "r" );
+		try {
+			byte[] bytes = new byte[(int) in.length()];
+			in.readFully( bytes );
+			return bytes;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static File write(byte[] bytes) throws IOException {
+		File file = tempFile();
+		FileOutputStream out = new FileOutputStream( file );
+		try {
+			out.write( bytes );
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private void assertChunk(long[] chunk, long deleted, long lastId, long maxId) {
+		assertEquals( deleted, chunk[0] );
+		assertEquals( lastId, chunk[1] );
+		assertEquals( maxId, chunk[2] );
+	}
+
+	private List<Long> addAll(int count) {
+		List<DataPoint> dps = new ArrayList<DataPoint>();
+		for ( int i = 0; i < count; i++ ) {
+			DataPoint dp = new DataPoint();
+			dp.setName( "data point " + i );
+			dps.add( dp );
+		}
+		dpService.addAll( dps );
+		List<Long> ids = new ArrayList<Long>();
+		for ( DataPoint dp : dps ) {
+			ids.add( dp.getId() );
+		}
+		return ids;
+	}
+
+	private DataPoint add(String name) {
+		DataPoint dp = new DataPoint();
+		dp.setName( name );
+		dpService.add( dp );
+		return dp;
+	}
+}
@@ -0,0 +1,106 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2013 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.osgitest.command;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.osgitest.DataPointService;
+import org.hibernate.osgitest.DataPointServiceImpl;
+import org.hibernate.osgitest.entity.DataPoint;
+
+public class ContentionCommandTest extends TestCase {
+
+	private SessionFactory sessionFactory;
+
+	@Override
+	protected void setUp() throws Exception {
+		sessionFactory = new Configuration()
+				.configure()
+				.setProperty( "hibernate.connection.url", "jdbc:h2:mem:contention;DB_CLOSE_DELAY=-1;MVCC=TRUE" )
+				.buildSessionFactory();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if ( sessionFactory != null ) {
+			sessionFactory.close();
+		}
+	}
+
+	public void testOptimisticRenameRetriesAfterLostRace() {
+		AtomicInteger attempts = new AtomicInteger();
+		DataPointService dpService = losing( 2, attempts );
+		DataPoint dp = add( dpService );
+
+		AtomicLong retries = new AtomicLong();
+		ContentionCommand.renameOptimistically( dpService, dp.getId(), "won", 5, retries );
+
+		assertEquals( 3, attempts.get() );
+		assertEquals( 2, retries.get() );
+		assertEquals( "won", dpService.get( dp.getId() ).getName() );
+	}
+
+	public void testOptimisticRenameStopsAtMaxRetries() {
+		AtomicInteger attempts = new AtomicInteger();
+		DataPointService dpService = losing( Integer.MAX_VALUE, attempts );
+		DataPoint dp = add( dpService );
+
+		AtomicLong retries = new AtomicLong();
+		try {
+			ContentionCommand.renameOptimistically( dpService, dp.getId(), "lost", 3, retries );
+			fail( "The rename never lost" );
+		}
+		catch (StaleObjectStateException expected) {
+		}
+
+		// the first attempt and 3 retries
+		assertEquals( 4, attempts.get() );
+		assertEquals( 3, retries.get() );
+		assertEquals( "concurrent", dpService.get( dp.getId() ).getName() );
+	}
+
+	// a service where another writer renames the data point between the read and the versioned
+	// update, for the given number of attempts
+	private DataPointService losing(final int lostRaces, final AtomicInteger attempts) {
+		return new DataPointServiceImpl( sessionFactory ) {
+			@Override
+			public void updateName(long id, long version, String name) {
+				if ( attempts.incrementAndGet() <= lostRaces ) {
+					updateName( id, "concurrent" );
+				}
+				super.updateName( id, version, name );
+			}
+		};
+	}
+
+	private DataPoint add(DataPointService dpService) {
+		DataPoint dp = new DataPoint();
+		dp.setName( "hot" );
+		dpService.add( dp );
+		return dp;
+	}
+}